@@ -0,0 +1,67 @@
+package stline.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/* JMH version of the app's own Benchmark class: the same ops, over random scenes of 1k, 100k and 1M lines at several zoom levels, drawn headless
+ * JMH doesn't allow benchmarks in the default package, and classes in a package can't name the ones in the default package (Where all of the app is),
+ * so the ops are made by calling Benchmark.op() reflectively once per trial. Each op is then just a Runnable, so nothing reflective is measured
+ *
+ * Run with: java -jar benchmarks/target/benchmarks.jar [JMH options]     (The GC profiler is always on, for the allocation rate)
+ * Eg. -p benchmark="mouse move (primitive)" -p lines=1000000 for just one case
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class StLineBenchmark
+{
+	@Param({"renderLines (uncached)", "renderLines (batched)", "render (tiles cached)", "renderGrid (cached)", "renderGrid (after pan)", "snapFrom", "getAbsoluteLocation", "mouse move (primitive)"})
+	public String benchmark;
+	
+	@Param({"1000", "100000", "1000000"})
+	public int lines;
+	
+	@Param({"10", "50", "100"})
+	public double ppu;
+	
+	private Runnable op;
+	
+	@Setup
+	public void setup() throws ReflectiveOperationException
+	{
+		op = (Runnable) Class.forName("Benchmark").getMethod("op", String.class, int.class, double.class).invoke(null, benchmark, lines, ppu);
+		if (op == null)
+			throw new IllegalArgumentException("Unknown benchmark: " + benchmark);
+	}
+	
+	@Benchmark
+	public void run()
+	{
+		op.run(); //The ops keep their results in volatile fields, so none of the work can be thrown away
+	}
+	
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException
+	{
+		new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).include(StLineBenchmark.class.getName()).addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,270 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import Utility.Vector2i;
+
+/* Benchmarks for the hot paths of the app: drawing the lines and the grid, snapping, and converting mouse pixels to space coordinates
+ * Everything is drawn headless on an offscreen BufferedImage set up the same way Main sets up its back buffer
+ * Every benchmark is warmed up first, then run for a while, and the average time per op, ops per second and bytes allocated per op are printed
+ * Each benchmark runs in a JVM of its own (With the same classpath and JVM options as this one), so what the JIT learned from one can't speed up or slow down the next
+ *
+ * Run with: java -Djava.awt.headless=true Benchmark [numbers of lines...]     (Defaults to 1000 100000 1000000)
+ * or, for just one benchmark in this JVM: java -Djava.awt.headless=true Benchmark --case <benchmark> <lines> <ppu>
+ */
+public class Benchmark
+{
+	private static final int RENDER_WIDTH = 800, RENDER_HEIGHT = 600;
+	private static final double[] PPUS = {10, 50, 100};
+	private static final int[] COLORS = {0xFFFF0000, 0xFF00AA00, 0xFF0000FF, 0xFF000000}; //Lines get one of these at random, so the batched path has several paths to draw
+	
+	private static final long WARMUP_NANOS = 500_000_000L, MEASURE_NANOS = 1_000_000_000L;
+	private static final int MIN_OPS = 3;
+	
+	private static volatile Object sink; //Results get stored here, so the JIT can't throw away the work being measured
+	private static volatile double doubleSink;
+	
+	private static final String MOUSE_MOVE = "mouse move (primitive)";
+	public static final String[] BENCHMARKS = {"renderLines (uncached)", "renderLines (batched)", "render (tiles cached)", "renderGrid (cached)", "renderGrid (after pan)", "snapFrom", "getAbsoluteLocation", MOUSE_MOVE};
+	
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		System.setProperty("java.awt.headless", "true");
+		
+		if (args.length == 4 && args[0].equals("--case"))
+		{
+			String name = args[1];
+			int size = Integer.parseInt(args[2]);
+			double ppu = Double.parseDouble(args[3]);
+			Runnable op = op(name, size, ppu);
+			if (op == null)
+			{
+				System.err.println("Unknown benchmark: " + name);
+				System.exit(2);
+			}
+			double bytes = measure(name, size, ppu, op);
+			if (name.equals(MOUSE_MOVE) && bytes >= 1) //The smallest object is 16 bytes, so anything under 1 byte/op is just the measuring itself, not something every op allocates
+			{
+				System.err.printf("FAILED: mouse move allocated %.1f bytes/op, expected 0%n", bytes);
+				System.exit(1);
+			}
+			return;
+		}
+		
+		int[] sizes = {1000, 100000, 1000000};
+		if (args.length > 0)
+		{
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++)
+				sizes[i] = Integer.parseInt(args[i]);
+		}
+		
+		System.out.printf("%-28s %10s %6s %14s %12s %14s%n", "benchmark", "lines", "ppu", "ms/op", "ops/s", "bytes/op");
+		boolean failed = false;
+		for (int size : sizes)
+		{
+			for (double ppu : PPUS)
+			{
+				for (String benchmark : BENCHMARKS)
+				{
+					if (fork(benchmark, size, ppu) != 0)
+						failed = true;
+				}
+			}
+		}
+		
+		if (failed)
+			System.exit(1);
+	}
+	
+	//Runs one benchmark in a new JVM, with its output going to ours, and returns its exit code
+	private static int fork(String benchmark, int size, double ppu) throws IOException, InterruptedException
+	{
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Benchmark.class.getName());
+		command.add("--case");
+		command.add(benchmark);
+		command.add(Integer.toString(size));
+		command.add(Double.toString(ppu));
+		return new ProcessBuilder(command).inheritIO().start().waitFor();
+	}
+	
+	/* Makes the op benchmark 'name' runs over a random space of 'size' lines at ppu, or returns null if there's no benchmark called that
+	 * Also used by the JMH benchmarks (See benchmarks/), which run these same ops
+	 */
+	public static Runnable op(String name, int size, double ppu)
+	{
+		final Space space = randomSpace(size, new Random(42));
+		final Camera cam = new Camera();
+		cam.calibrate(RENDER_WIDTH, RENDER_HEIGHT, ppu);
+		cam.setRenderThreads(1); //Allocations are only counted for this thread
+		
+		BufferedImage img = new BufferedImage(RENDER_WIDTH, RENDER_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D bg = newGraphics(img);
+		final double[] bounds = cam.getBounds();
+		final Random random = new Random(7);
+		
+		switch (name)
+		{
+			case "renderLines (uncached)":
+				return new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						cam.translate(bg);
+						cam.renderLines(space.getLines(), 0, space.getLines().size(), bg, bounds[0], bounds[1], bounds[2], bounds[3]);
+						cam.reset(bg);
+					}
+				};
+			case "renderLines (batched)": //Same as above, with all lines of a color drawn as one path. Slower with anti-aliasing on, which is why it's not the default
+				cam.setBatchLines(true);
+				return new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						cam.translate(bg);
+						cam.renderLines(space.getLines(), 0, space.getLines().size(), bg, bounds[0], bounds[1], bounds[2], bounds[3]);
+						cam.reset(bg);
+					}
+				};
+			case "render (tiles cached)":
+				return new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						cam.render(space, bg);
+					}
+				};
+			case "renderGrid (cached)":
+				return new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						cam.renderGrid(bg);
+					}
+				};
+			case "renderGrid (after pan)":
+				return new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						cam.setPos(cam.getPos()); //Marks the grid as changed without really moving
+						cam.renderGrid(bg);
+					}
+				};
+			case "snapFrom":
+				return new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						sink = space.snapFrom(new Vector2i(random.nextDouble() * 200 - 100, random.nextDouble() * 200 - 100));
+					}
+				};
+			case "getAbsoluteLocation":
+				return new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						sink = cam.getAbsoluteLocation(new Vector2i(random.nextInt(RENDER_WIDTH) - RENDER_WIDTH / 2, random.nextInt(RENDER_HEIGHT) - RENDER_HEIGHT / 2));
+					}
+				};
+			case MOUSE_MOVE: //What Main does for every mouse move: pixel to space, then snap. This must not allocate anything
+				final double[] snap = new double[2];
+				return new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						double x = cam.getAbsoluteX(random.nextInt(RENDER_WIDTH) - RENDER_WIDTH / 2);
+						double y = cam.getAbsoluteY(random.nextInt(RENDER_HEIGHT) - RENDER_HEIGHT / 2);
+						space.snapFrom(x, y, snap);
+						cam.getBounds(bounds);
+						doubleSink = snap[0] + snap[1] + bounds[0];
+					}
+				};
+			default:
+				bg.dispose();
+				return null;
+		}
+	}
+	
+	//Runs op until WARMUP_NANOS have passed, then runs it again for MEASURE_NANOS (And at least MIN_OPS times), prints the results and returns the bytes allocated per op
+	private static double measure(String name, int size, double ppu, Runnable op)
+	{
+		long end = System.nanoTime() + WARMUP_NANOS;
+		while (System.nanoTime() < end)
+			op.run();
+		
+		long ops = 0;
+		long startBytes = allocatedBytes();
+		long start = System.nanoTime();
+		end = start + MEASURE_NANOS;
+		while (ops < MIN_OPS || System.nanoTime() < end)
+		{
+			op.run();
+			ops++;
+		}
+		long nanos = System.nanoTime() - start;
+		long bytes = allocatedBytes() - startBytes;
+		
+		System.out.printf("%-28s %10d %6.0f %14.4f %12.1f %14.1f%n", name, size, ppu, nanos / 1e6 / ops, ops * 1e9 / nanos, (double) bytes / ops);
+		return (double) bytes / ops;
+	}
+	
+	//Bytes allocated by this thread so far, or 0 if the JVM can't tell
+	private static long allocatedBytes()
+	{
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return 0;
+	}
+	
+	//Random mix of lines, segments and rays with integer endpoints in [-100, 100), in one of COLORS colors
+	private static Space randomSpace(int size, Random random)
+	{
+		Space space = new Space();
+		for (int i = 0; i < size; i++)
+		{
+			Line line = i % 3 == 0 ? new Line() : i % 3 == 1 ? new Segment() : new Ray();
+			line.col = COLORS[random.nextInt(COLORS.length)];
+			line.startAt(new Vector2i(random.nextInt(200) - 100, random.nextInt(200) - 100));
+			do
+				line.endAt(new Vector2i(random.nextInt(200) - 100, random.nextInt(200) - 100));
+			while (line.isInvalid());
+			space.push(line);
+		}
+		return space;
+	}
+	
+	//Same coordinate system and settings as Main uses for its back buffer
+	private static Graphics2D newGraphics(BufferedImage img)
+	{
+		Graphics2D bg = img.createGraphics();
+		bg.translate(RENDER_WIDTH / 2, RENDER_HEIGHT / 2);
+		bg.scale(1.0, -1.0);
+		bg.setBackground(Color.WHITE);
+		bg.clearRect(-RENDER_WIDTH / 2, -RENDER_HEIGHT / 2, RENDER_WIDTH, RENDER_HEIGHT);
+		bg.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		bg.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+		return bg;
+	}
+}
@@ -1,35 +1,90 @@
-import java.awt.BasicStroke;
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
 import java.awt.Toolkit;
+import java.awt.Transparency;
 import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 
 import Utility.Vector2i;
 
 public class Camera
 {
-	private Vector2i pos = new Vector2i(); //Centre of the bounding square of the cam
+	private double posX, posY; //Centre of the bounding square of the cam. Kept as two doubles so moving the camera doesn't make a new Vector2i every time
+	
+	//Floating origin. Things are drawn at (x - originX) * ppu pixels rather than x * ppu, which would lose precision and overflow far away from (0, 0)
+	private double originX, originY;
+	private static final double REBASE_PIXELS = 1 << 20;
 	private double xUnitsOnScreen, yUnitsOnScreen; //Number of units between centre of cam and any one edge of the bounding square of this camera
 	private double ppu; //pixelsPerUnit, that is, size of one unit square in terms of pixels on screen
 	
-	private double fontHeight = 0.4; //Height of font in units IN SPACE DIMENSIONS
-	private double fontOffset = 0.1; //Offset of font from the axes IN SPACE DIMENSIONS
-	private double snapRadius = 0.4; //GRAPHICAL RADIUS of snap IN SPACE DIMENSIONS
-	private double origRadius = 1; //GRAPHICAL RADIUS of square at origin
+	//These are all in pixels, so they stay the same size on screen however far the camera is zoomed in or out
+	private double fontHeight = 20; //Height of font IN PIXELS
+	private double fontOffset = 5; //Offset of font from the axes IN PIXELS
+	private double snapRadius = 20; //GRAPHICAL RADIUS of snap IN PIXELS
+	private double origRadius = 50; //GRAPHICAL RADIUS of square at origin IN PIXELS
+	
+	public static final double MIN_PPU = 1e-6, MAX_PPU = 1e7;
+	private static final double ZOOM_FACTOR = 1.1; //How much the ppu changes by for one step of zoomIn() or zoomOut()
 	
-	private Color gridColor = getColor(0xFFAAAAAA);
-	private Color coordsColor = getColor(0xFF000000);
-	private Color origColor = getColor(0xAA000000);
+	//The grid has labelled (major) lines 1, 2 or 5 x 10^n units apart, picked so they are at least MIN_MAJOR_PIXELS apart on screen,
+	//with 4 or 5 unlabelled (minor) lines in between them, which fade out as they get closer together than FADE_PIXELS
+	private static final double MIN_MAJOR_PIXELS = 40;
+	private static final double MIN_MINOR_PIXELS = 4, FADE_PIXELS = 20;
+	private static final int MAX_GRID_LINES = 500; //Minor lines are skipped if there would be more lines than this in the view
+	
+	private Color gridColor = Palette.getColor(0xFFAAAAAA);
+	private Color coordsColor = Palette.getColor(0xFF000000);
+	private Color origColor = Palette.getColor(0xAA000000);
 	
 	private double fontSize;
 	private Font font;
-	private double fontWidth;
+	private LabelCache labels = new LabelCache(1024);
+	private static int screenResolution; //Asked for once, the first time it's needed
+	private double fontWidth; //Width of one character IN PIXELS
+	
+	//Current spacing of the major grid lines, gridMantissa x 10^gridExponent units, and how many minor steps there are between two of them
+	private int gridMantissa, gridExponent, gridDivisions;
+	
+	//Whether renderLines() draws all lines of a color as one path, see setBatchLines(). Can be turned on with -Dstline.batchLines=true
+	private boolean batchLines = Boolean.getBoolean("stline.batchLines");
+	private static final ThreadLocal<LineBatch> batches = new ThreadLocal<LineBatch>() //Tiles are drawn on several threads, so each one gets its own batch
+	{
+		@Override
+		protected LineBatch initialValue()
+		{
+			return new LineBatch();
+		}
+	};
+	
+	//Shapes the draw functions fill in and draw, instead of making new ones for every call. Tiles are drawn on several threads, so each one gets its own
+	private static final ThreadLocal<Shapes> shapes = new ThreadLocal<Shapes>()
+	{
+		@Override
+		protected Shapes initialValue()
+		{
+			return new Shapes();
+		}
+	};
+	
+	private TileCache tiles = new TileCache(64 * 1024 * 1024, 1);
+	
+	private double[] viewBounds = new double[4]; //Reused by drawGrid()
+	private double[] labelBounds; //What labels stick to the edges of instead of the view, see setLabelBounds()
+	
+	private BufferedImage gridLayer; //Pre-rendered grid of the current view
+	private boolean gridChanged = true; //Whether the view has changed since gridLayer was drawn
 	
 	public Camera()
 	{
-		
+	
 	}
 	
 	public Camera(double xUnitsOnScreen, double yUnitsOnScreen, double ppu)
@@ -52,7 +107,18 @@ public class Camera
 	//Returns absolute coordinate of pixel in Space, if coordinate of a pixel is passed wrt centre of cam
 	public Vector2i getAbsoluteLocation(Vector2i pixel)
 	{
-		return new Vector2i(pixel.x / ppu, pixel.y / ppu).add(pos);
+		return new Vector2i(getAbsoluteX(pixel.x), getAbsoluteY(pixel.y));
+	}
+	
+	//Same as getAbsoluteLocation(), one coordinate at a time, so mouse events can be handled without making any objects
+	public double getAbsoluteX(double pixelX)
+	{
+		return pixelX / ppu + posX;
+	}
+	
+	public double getAbsoluteY(double pixelY)
+	{
+		return pixelY / ppu + posY;
 	}
 	
 	public double getXUnitsOnScreen()
@@ -77,12 +143,30 @@ public class Camera
 	
 	public Vector2i getPos()
 	{
-		return this.pos;
+		return new Vector2i(posX, posY);
+	}
+	
+	public double getX()
+	{
+		return posX;
+	}
+	
+	public double getY()
+	{
+		return posY;
 	}
 	
 	public void setPos(Vector2i pos)
 	{
-		this.pos = pos;
+		setPos(pos.x, pos.y);
+	}
+	
+	public void setPos(double x, double y)
+	{
+		posX = x;
+		posY = y;
+		gridChanged = true;
+		rebase();
 	}
 	
 	public double getPPU()
@@ -93,92 +177,239 @@ public class Camera
 	public void setPPU(double ppu)
 	{
 		this.ppu = ppu;
+		gridChanged = true;
+		rebase();
 	}
 	
+	//Sets how many threads are used to draw the lines of the space
+	public void setRenderThreads(int threads)
+	{
+		tiles.setThreads(threads);
+	}
+	
+	//Draws all the lines of the space. They are drawn on tiles that are kept by the TileCache, so only the tiles coming into view need to be drawn again
 	public void render(Space space, Graphics2D bg)
 	{
 		translate(bg);
+		tiles.render(space, this, bg);
+		reset(bg);
+	}
+	
+	//Draws the lines from index 'from' to index 'to' (Excluding 'to') of the store, as seen inside the given bounds
+	//Expects bg to already be translated the way translate() does
+	public void renderLines(LineStore lines, int from, int to, Graphics2D bg, double xLeft, double yUp, double xRight, double yDown)
+	{
+		renderLines(lines, null, from, to, bg, xLeft, yUp, xRight, yDown);
+	}
+	
+	//Same as above, for just the lines whose indices are in the first 'count' elements of indices (Eg. the ones that were already found to be near the bounds)
+	public void renderLines(LineStore lines, int[] indices, int count, Graphics2D bg, double xLeft, double yUp, double xRight, double yDown)
+	{
+		renderLines(lines, indices, 0, count, bg, xLeft, yUp, xRight, yDown);
+	}
+	
+	//Draws lines indices[from] to indices[to - 1], or lines 'from' to 'to' - 1 if indices is null
+	private void renderLines(LineStore lines, int[] indices, int from, int to, Graphics2D bg, double xLeft, double yUp, double xRight, double yDown)
+	{
+		LineBatch batch = batchLines ? batches.get() : null;
+		Shapes shapes = Camera.shapes.get();
+		Line2D.Double line = shapes.line;
+		double[] box = shapes.box, clipped = shapes.clipped;
 		
-		for (Component comp : space.getComps())
+		//Goes through the columns of the LineStore directly, rather than making a Line object render itself
+		int col = 0;
+		boolean colSet = false;
+		for (int k = from; k < to; k++)
 		{
-			if (!comp.isInvalid())
-				comp.render(bg, this);
+			int i = indices == null ? k : indices[k];
+			int kind = lines.kind(i);
+			double lx1 = lines.x1(i), ly1 = lines.y1(i), lx2 = lines.x2(i), ly2 = lines.y2(i);
+			
+			//Skips lines whose bounding box is nowhere near the bounds, then cuts the rest down to the part inside the bounds (Before anything is converted to pixels)
+			Geometry.bounds(kind, lx1, ly1, lx2, ly2, box);
+			if (!Geometry.overlaps(box[0], box[1], box[2], box[3], xLeft, yUp, xRight, yDown))
+				continue;
+			if (!Geometry.clip(lx1, ly1, lx2, ly2, Geometry.minT(kind), Geometry.maxT(kind), xLeft, yUp, xRight, yDown, clipped))
+				continue;
+			double x1 = clipped[0], y1 = clipped[1], x2 = clipped[2], y2 = clipped[3];
+			
+			if (batch != null)
+			{
+				//Same pixel coordinates as drawLine() would use
+				batch.add(lines.col(i), (x1 - originX) * ppu, (y1 - originY) * ppu, (x2 - originX) * ppu, (y2 - originY) * ppu);
+				continue;
+			}
+			
+			if (!colSet || lines.col(i) != col) //Color only needs to be changed when it's different from the previous line's
+			{
+				col = lines.col(i);
+				colSet = true;
+				bg.setColor(Palette.getColor(col));
+			}
+			drawLine(bg, line, x1, y1, x2, y2);
 		}
 		
-		reset(bg);
+		if (batch != null)
+			batch.draw(bg);
+	}
+	
+	//Draws one line of the given kind (See LineStore) in the given color, cut down to the part of it in view. For lines that aren't in a LineStore, like the one being drawn
+	public void renderLine(Graphics2D bg, byte kind, double x1, double y1, double x2, double y2, int col)
+	{
+		Shapes shapes = Camera.shapes.get();
+		double[] clipped = getBounds(shapes.clipped); //The same array gets the clipped line in it after
+		if (Geometry.clip(x1, y1, x2, y2, Geometry.minT(kind), Geometry.maxT(kind), clipped[0], clipped[1], clipped[2], clipped[3], clipped))
+		{
+			bg.setColor(Palette.getColor(col));
+			drawLine(bg, shapes.line, clipped[0], clipped[1], clipped[2], clipped[3]);
+		}
 	}
 	
+	//Whether renderLines() draws all lines of a color as one path (true), or each line with its own drawLine() call (false)
+	//With anti-aliasing on, one big path of crossing lines takes longer to fill than the same lines drawn one by one (See the batched case of Benchmark), so it is off by default
+	public void setBatchLines(boolean batchLines)
+	{
+		this.batchLines = batchLines;
+	}
+	
+	//Makes the grid's labels and origin square stick to the edges of the given bounds ({xLeft, yUp, xRight, yDown}) instead of the edges of the view when the axes are out of view,
+	//and thins out the labels the same way anywhere inside them. Used when one big image is drawn as several views. null goes back to the edges of the view
+	public void setLabelBounds(double[] labelBounds)
+	{
+		this.labelBounds = labelBounds;
+		gridChanged = true;
+	}
+	
+	//Draws the grid, axes, coordinates and origin square. They only change when the camera moves or zooms,
+	//so they are drawn once on gridLayer and that image is just copied onto the screen until the view changes
 	public void renderGrid(Graphics2D bg)
+	{
+		int width = (int) Math.round(2 * xUnitsOnScreen * ppu), height = (int) Math.round(2 * yUnitsOnScreen * ppu); //Size of the view in pixels
+		if (width <= 0 || height <= 0)
+			return;
+		
+		if (gridLayer == null || gridLayer.getWidth() != width || gridLayer.getHeight() != height)
+		{
+			gridLayer = bg.getDeviceConfiguration().createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+			gridChanged = true;
+		}
+		
+		if (gridChanged)
+		{
+			Graphics2D g = gridLayer.createGraphics();
+			g.setComposite(AlphaComposite.Clear); //Clears the old grid to transparent
+			g.fillRect(0, 0, width, height);
+			g.setComposite(AlphaComposite.SrcOver);
+			g.setRenderingHints(bg.getRenderingHints());
+			
+			//Same cartesian coordinate system as the screen
+			g.translate(width / 2, height / 2);
+			g.scale(1.0, -1.0);
+			drawGrid(g);
+			g.dispose();
+			gridChanged = false;
+		}
+		
+		//bg has y going up, so the image has to be flipped back to get drawn the right way up
+		AffineTransform at = bg.getTransform();
+		bg.translate(-width / 2, height / 2);
+		bg.scale(1.0, -1.0);
+		bg.drawImage(gridLayer, 0, 0, null);
+		bg.setTransform(at);
+	}
+	
+	private void drawGrid(Graphics2D bg)
 	{
 		translate(bg);
 		
 		//Coordinates of bounding lines of camera (Camera is basically a square with 'pos' being centre of that square)
-		double[] bounds = this.getBounds();
+		double[] bounds = this.getBounds(viewBounds);
 		double xLeft = bounds[0], yUp = bounds[1], xRight = bounds[2], yDown = bounds[3];
 		
-		//Draw vertical lines
-		for (double x = (int) xLeft; x < xRight; x++)
+		//Sizes of the font, its offset and the origin square IN SPACE DIMENSIONS at the current zoom
+		double fontHeight = this.fontHeight / ppu, fontOffset = this.fontOffset / ppu, fontWidth = this.fontWidth / ppu, origRadius = this.origRadius / ppu;
+		
+		double step = getGridStep(), minorStep = step / gridDivisions;
+		
+		//Draw minor lines, fainter the closer together they are. Every gridDivisions'th one is a major line, which gets drawn after
+		double minorPixels = minorStep * ppu;
+		long minorCount = (long) ((xRight - xLeft) / minorStep) + (long) ((yUp - yDown) / minorStep);
+		if (minorPixels >= MIN_MINOR_PIXELS && minorCount <= MAX_GRID_LINES)
 		{
-			bg.setColor(gridColor);
-			drawLine(bg, x, yDown, x, yUp);
+			double fade = Math.min(1, (minorPixels - MIN_MINOR_PIXELS) / (FADE_PIXELS - MIN_MINOR_PIXELS));
+			bg.setColor(Palette.getColor((int) (fade * 0x80) << 24 | (gridColor.getRGB() & 0xFFFFFF)));
+			for (long k = (long) Math.ceil(xLeft / minorStep); k * minorStep < xRight; k++)
+				if (k % gridDivisions != 0)
+					drawLine(bg, k * minorStep, yDown, k * minorStep, yUp);
+			for (long k = (long) Math.ceil(yDown / minorStep); k * minorStep < yUp; k++)
+				if (k % gridDivisions != 0)
+					drawLine(bg, xLeft, k * minorStep, xRight, k * minorStep);
 		}
 		
+		//Draw vertical lines
+		bg.setColor(gridColor);
+		for (long k = (long) Math.ceil(xLeft / step); k * step < xRight; k++)
+			drawLine(bg, k * step, yDown, k * step, yUp);
+		
 		//Draw horizontal lines
-		for (double y = (int) yDown; y < yUp; y++)
-		{
-			bg.setColor(gridColor);
-			drawLine(bg, xLeft, y, xRight, y);
-		}
+		for (long k = (long) Math.ceil(yDown / step); k * step < yUp; k++)
+			drawLine(bg, xLeft, k * step, xRight, k * step);
 		
 		//Draw x and y axes
 		bg.setColor(Color.BLACK);
-		bg.setStroke(new BasicStroke(3));
+		bg.setStroke(Palette.getStroke(3));
 		drawLine(bg, 0, yDown, 0, yUp); //x-axis
 		drawLine(bg, xLeft, 0, xRight, 0); //y-axis
-		bg.setStroke(new BasicStroke(1));
+		bg.setStroke(Palette.getStroke(1));
 		
 		//DRAW GRID COORDS
 		//NOTE: We have to use bg.scale(1.0,-1.0) because otherwise string gets drawn upside down
 		bg.setColor(coordsColor);
 		bg.setFont(font);
 		
+		//Labels and the origin square stick to the edges of the view when the axes are out of it. If labelBounds is set, they stick to its edges instead
+		//(Eg. the edges of the whole image when it is exported tile by tile, so they don't show up at the edge of every tile)
+		double[] edges = labelBounds != null ? labelBounds : bounds;
+		double eLeft = edges[0], eUp = edges[1], eRight = edges[2], eDown = edges[3];
+		long every = getLabelEvery(eLeft, eRight, fontWidth);
+		
 		//Draw grid coords of x-axis
-		if (0 < yUp) //If text is below the top of the screen
+		if (0 < eUp) //If text is below the top of the screen
 		{
-			if (0 - fontHeight - fontOffset > yDown) //If text is above the bottom of the screen, that is, it is visible in the screen and should be drawn as such
-				renderHorCoords(0 - fontHeight, xLeft, xRight, bg);
+			if (0 - fontHeight - fontOffset > eDown) //If text is above the bottom of the screen, that is, it is visible in the screen and should be drawn as such
+				renderHorCoords(0 - fontHeight, xLeft, xRight, every, fontWidth, bg);
 			else //If text is below the bottom of the screen
-				renderHorCoords(yDown + fontOffset, xLeft, xRight, bg);
+				renderHorCoords(eDown + fontOffset, xLeft, xRight, every, fontWidth, bg);
 		}
 		else //If text is above the top of the screen
 		{
-			renderHorCoords(yUp - fontHeight, xLeft, xRight, bg);
+			renderHorCoords(eUp - fontHeight, xLeft, xRight, every, fontWidth, bg);
 		}
 		
 		//Draw grid coords of y-axis
-		if (0 - fontWidth - 2 * fontOffset > xLeft) //If text is to the right of the left side of screen
+		if (0 - fontWidth - 2 * fontOffset > eLeft) //If text is to the right of the left side of screen
 		{
-			if (0 < xRight) //If text is to the left of the right side of screen, that is, it is visible in the screen and should be drawn as such
-				renderVerCoordsToLeftOf(0 - fontOffset, yDown, yUp, bg);
+			if (0 < eRight) //If text is to the left of the right side of screen, that is, it is visible in the screen and should be drawn as such
+				renderVerCoordsToLeftOf(0 - fontOffset, yDown, yUp, fontWidth, bg);
 			else //If text is to the right of the right side of screen
-				renderVerCoordsToLeftOf(xRight - fontOffset, yDown, yUp, bg);
+				renderVerCoordsToLeftOf(eRight - fontOffset, yDown, yUp, fontWidth, bg);
 		}
 		else //If text is to the left of the left side of screen
 		{
-			renderVerCoordsToRightOf(xLeft + fontOffset, yDown, yUp, bg);
+			renderVerCoordsToRightOf(eLeft + fontOffset, yDown, yUp, bg);
 		}
 		
 		//Draw a grey square at origin. If origin is outside frame, draw it just like how we are drawing the grid coordinates above
 		double xSq = -origRadius/2, ySq = -origRadius/2; //Coordinates of bottom-left point of grey square
-		if (-origRadius / 2 < xLeft)
-			xSq = xLeft;
-		else if (+origRadius / 2 > xRight)
-			xSq = xRight - origRadius;
+		if (-origRadius / 2 < eLeft)
+			xSq = eLeft;
+		else if (+origRadius / 2 > eRight)
+			xSq = eRight - origRadius;
 		
-		if (+origRadius / 2 > yUp)
-			ySq = yUp-origRadius;
-		else if (-origRadius / 2 < yDown)
-			ySq = yDown;
+		if (+origRadius / 2 > eUp)
+			ySq = eUp-origRadius;
+		else if (-origRadius / 2 < eDown)
+			ySq = eDown;
 		
 		bg.setColor(origColor);
 		this.fillRect(bg, xSq, ySq, origRadius, origRadius);
@@ -187,28 +418,44 @@ public class Camera
 		reset(bg);
 	}
 	
-	//Renders horizontal coords given the y coordinate of the base line and the starting and ending coords
-	private void renderHorCoords(double yBase, double xLeft, double xRight, Graphics2D bg)
+	//Renders horizontal coords given the y coordinate of the base line and the starting and ending coords. There is one at every 'every'th major grid line
+	private void renderHorCoords(double yBase, double xLeft, double xRight, long every, double fontWidth, Graphics2D bg)
 	{
-		for (int x = (int) (xLeft - 1); x <= xRight + 1; x++)
+		double step = getGridStep();
+		//A label can be as wide as 'every' steps, so ones that far outside the range can still reach into it
+		for (long k = (long) Math.floor(xLeft / step) - every; k * step <= xRight + every * step; k++)
 		{
-			if (x != 0)
+			if (k != 0 && k % every == 0)
 			{
-				String str = "" + x;
-				drawString(bg, str, x - str.length() * fontWidth / 2, yBase);
+				GlyphVector label = getGridLabel(k);
+				drawGlyphs(bg, label, k * step - label.getNumGlyphs() * fontWidth / 2, yBase);
 			}
 		}
 	}
 	
+	//Long labels (Eg. "-1500000") can be wider than the space between two major lines, in which case only every 2nd, 5th, 10th... one is drawn
+	//Returns how many major lines apart the labels between xLeft and xRight have to be so they don't overlap
+	private long getLabelEvery(double xLeft, double xRight, double fontWidth)
+	{
+		double step = getGridStep();
+		long kMin = (long) Math.floor(xLeft / step) - 1, kMax = (long) Math.ceil(xRight / step) + 1;
+		int chars = Math.max(getGridLabel(kMin).getNumGlyphs(), getGridLabel(kMax).getNumGlyphs()) + 1;
+		long every = 1;
+		for (int i = 1; chars * fontWidth > every * step; i++)
+			every = (i % 3 == 0 ? 1 : i % 3 == 1 ? 2 : 5) * (long) Math.pow(10, i / 3); //Goes 2, 5, 10, 20, 50... so the labels that are left are still at round numbers
+		return every;
+	}
+	
 	//Renders vertical coords given the x coordinate of the rhs of the text and the starting and ending coords
-	private void renderVerCoordsToLeftOf(double xRight, double yDown, double yUp, Graphics2D bg)
+	private void renderVerCoordsToLeftOf(double xRight, double yDown, double yUp, double fontWidth, Graphics2D bg)
 	{
-		for (int y = (int) (yDown - 1); y <= yUp + 1; y++)
+		double step = getGridStep();
+		for (long k = (long) Math.floor(yDown / step) - 1; k * step <= yUp + step; k++)
 		{
-			if (y != 0)
+			if (k != 0)
 			{
-				String str = "" + y;
-				drawString(bg, str, xRight - str.length() * fontWidth, y);
+				GlyphVector label = getGridLabel(k);
+				drawGlyphs(bg, label, xRight - label.getNumGlyphs() * fontWidth, k * step);
 			}
 		}
 	}
@@ -216,110 +463,217 @@ public class Camera
 	//Renders vertical coords given the x coordinate of the rhs of the text and the starting and ending coords
 	private void renderVerCoordsToRightOf(double xLeft, double yDown, double yUp, Graphics2D bg)
 	{
-		for (int y = (int) (yDown - 1); y <= yUp + 1; y++)
+		double step = getGridStep();
+		for (long k = (long) Math.floor(yDown / step) - 1; k * step <= yUp + step; k++)
 		{
-			if (y != 0)
+			if (k != 0)
 			{
-				String str = "" + y;
-				drawString(bg, str, xLeft, y);
+				drawGlyphs(bg, getGridLabel(k), xLeft, k * step);
 			}
 		}
 	}
 	
+	//Units between two major grid lines
+	private double getGridStep()
+	{
+		return gridMantissa * Math.pow(10, gridExponent);
+	}
+	
+	//Label of the k'th major grid line from the origin, that is, k * gridMantissa x 10^gridExponent
+	private GlyphVector getGridLabel(long k)
+	{
+		return labels.get(k * gridMantissa, gridExponent);
+	}
+	
+	//Picks the spacing of the grid lines for the current ppu
+	private void updateGridStep()
+	{
+		double minStep = MIN_MAJOR_PIXELS / ppu; //Smallest spacing, in units, that keeps the major lines MIN_MAJOR_PIXELS apart
+		gridExponent = (int) Math.floor(Math.log10(minStep));
+		double scale = Math.pow(10, gridExponent);
+		if (scale >= minStep)
+			gridMantissa = 1;
+		else if (2 * scale >= minStep)
+			gridMantissa = 2;
+		else if (5 * scale >= minStep)
+			gridMantissa = 5;
+		else
+		{
+			gridMantissa = 1;
+			gridExponent++;
+		}
+		gridDivisions = gridMantissa == 2 ? 4 : 5;
+	}
+	
 	public void renderSnap(Vector2i snap, Graphics2D bg)
+	{
+		renderSnap(snap.x, snap.y, bg);
+	}
+	
+	public void renderSnap(double x, double y, Graphics2D bg)
 	{
 		translate(bg);
 		
 		//Draws green sqaure around point to which mouse must be snapped to
-		bg.setColor(new Color(0xFF00AA00));
-		fillRect(bg, snap.x - snapRadius / 2, snap.y - snapRadius / 2, snapRadius, snapRadius);
-		bg.setColor(new Color(0xFF000000));
-		drawRect(bg, snap.x - snapRadius / 2, snap.y - snapRadius / 2, snapRadius, snapRadius);
+		double snapRadius = this.snapRadius / ppu;
+		bg.setColor(Palette.getColor(0xFF00AA00));
+		fillRect(bg, x - snapRadius / 2, y - snapRadius / 2, snapRadius, snapRadius);
+		bg.setColor(Palette.getColor(0xFF000000));
+		drawRect(bg, x - snapRadius / 2, y - snapRadius / 2, snapRadius, snapRadius);
 		reset(bg);
 	}
 	
+	//Zooming is multiplicative, so one step feels the same whether the camera is zoomed in on a tiny part of the space or showing a huge part of it
 	public void zoomIn()
 	{
-		if (ppu < 100)
-			ppu += 5;
+		ppu = Math.min(ppu * ZOOM_FACTOR, MAX_PPU);
 		update();
 	}
 	
 	public void zoomOut()
 	{
-		if (ppu > 8)
-			ppu -= 5;
+		ppu = Math.max(ppu / ZOOM_FACTOR, MIN_PPU);
 		update();
 	}
 	
-	//Sets centre of our drawing screen to centre of camera
+	//Sets centre of our drawing screen to centre of camera. Shapes are drawn relative to the floating origin, so the shift is only as big as the distance between the two
 	public void translate(Graphics2D bg)
 	{
-		bg.translate(-pos.x * ppu, -pos.y * ppu);
+		bg.translate((originX - posX) * ppu, (originY - posY) * ppu);
 	}
 	
 	//Resets drawing coords back to normal
 	public void reset(Graphics2D bg)
 	{
-		bg.translate(pos.x * ppu, pos.y * ppu);
+		bg.translate((posX - originX) * ppu, (posY - originY) * ppu);
+	}
+	
+	public double getOriginX()
+	{
+		return originX;
+	}
+	
+	public double getOriginY()
+	{
+		return originY;
+	}
+	
+	//Moves the floating origin to the centre of the camera once the camera has gone more than REBASE_PIXELS away from it
+	//It only moves when the camera does, never in the middle of a frame, so everything drawn in one frame uses the same origin
+	private void rebase()
+	{
+		if (Math.abs(posX - originX) * ppu > REBASE_PIXELS || Math.abs(posY - originY) * ppu > REBASE_PIXELS)
+		{
+			originX = posX;
+			originY = posY;
+			gridChanged = true;
+		}
 	}
 	
 	//Returns bounds of this camera, more specifically, returns the top-left and the bottom-right coordinates of the camera's view
 	public double[] getBounds()
 	{
-		double xLeft = this.getPos().x - this.getXUnitsOnScreen();
-		double xRight = this.getPos().x + this.getXUnitsOnScreen();
-		double yUp = this.getPos().y + this.getYUnitsOnScreen();
-		double yDown = this.getPos().y - this.getYUnitsOnScreen();
-		return new double[] {xLeft, yUp, xRight, yDown};
+		return getBounds(new double[4]);
+	}
+	
+	//Same as getBounds(), but puts them in out (Which must have room for 4) instead of a new array, and returns out
+	public double[] getBounds(double[] out)
+	{
+		out[0] = posX - xUnitsOnScreen; //xLeft
+		out[1] = posY + yUnitsOnScreen; //yUp
+		out[2] = posX + xUnitsOnScreen; //xRight
+		out[3] = posY - yUnitsOnScreen; //yDown
+		return out;
 	}
 	
 	//The following functions convert space coords to camera coords and draw the required components
+	//Coordinates are taken relative to the floating origin before they are multiplied by ppu, so they stay small (And exact) however far the camera is from (0, 0)
+	//They're drawn as double precision shapes, so nothing gets rounded to whole pixels or overflows an int
 	
 	public void drawLine(Graphics2D bg, double x1, double y1, double x2, double y2)
 	{
-		bg.drawLine((int) (x1 * this.getPPU()), (int) (y1 * this.getPPU()), (int) (x2 * this.getPPU()), (int) (y2 * this.getPPU()));
+		drawLine(bg, shapes.get().line, x1, y1, x2, y2);
+	}
+	
+	//Same as drawLine() above, with the Line2D to use passed in, so renderLines() only has to look it up once
+	private void drawLine(Graphics2D bg, Line2D.Double line, double x1, double y1, double x2, double y2)
+	{
+		line.setLine((x1 - originX) * ppu, (y1 - originY) * ppu, (x2 - originX) * ppu, (y2 - originY) * ppu);
+		bg.draw(line);
 	}
 	
 	public void drawRect(Graphics2D bg, double x, double y, double width, double height)
 	{
-		bg.drawRect((int) (x * this.getPPU()), (int) (y * this.getPPU()), (int) (int) (width * this.getPPU()), (int) (height * this.getPPU()));
+		bg.draw(toRect(x, y, width, height));
 	}
 	
 	public void fillRect(Graphics2D bg, double x, double y, double width, double height)
 	{
-		bg.fillRect((int) (x * this.getPPU()), (int) (y * this.getPPU()), (int) (int) (width * this.getPPU()), (int) (height * this.getPPU()));
+		bg.fill(toRect(x, y, width, height));
 	}
 	
 	public void drawOval(Graphics2D bg, double x, double y, double r1, double r2)
 	{
-		bg.drawOval((int) (x * this.getPPU()), (int) (y * this.getPPU()), (int) (int) (r1 * this.getPPU()), (int) (r2 * this.getPPU()));
+		bg.draw(toOval(x, y, r1, r2));
 	}
 	
 	public void fillOval(Graphics2D bg, double x, double y, double r1, double r2)
 	{
-		bg.fillOval((int) (x * this.getPPU()), (int) (y * this.getPPU()), (int) (int) (r1 * this.getPPU()), (int) (r2 * this.getPPU()));
+		bg.fill(toOval(x, y, r1, r2));
 	}
 	
 	public void drawString(Graphics2D bg, String str, double x, double y)
 	{
-		bg.drawString(str, (int) (x * this.getPPU()), (int) (y * this.getPPU()));
+		bg.drawString(str, (float) ((x - originX) * ppu), (float) ((y - originY) * ppu));
+	}
+	
+	public void drawGlyphs(Graphics2D bg, GlyphVector glyphs, double x, double y)
+	{
+		bg.drawGlyphVector(glyphs, (float) ((x - originX) * ppu), (float) ((y - originY) * ppu));
+	}
+	
+	private Rectangle2D.Double toRect(double x, double y, double width, double height)
+	{
+		Rectangle2D.Double rect = shapes.get().rect;
+		rect.setRect((x - originX) * ppu, (y - originY) * ppu, width * ppu, height * ppu);
+		return rect;
+	}
+	
+	private Ellipse2D.Double toOval(double x, double y, double r1, double r2)
+	{
+		Ellipse2D.Double oval = shapes.get().oval;
+		oval.setFrame((x - originX) * ppu, (y - originY) * ppu, r1 * ppu, r2 * ppu);
+		return oval;
 	}
 	
 	//Updates all the variables associated with the camera
 	public void update()
 	{
-		fontSize = 72.0 * fontHeight / Toolkit.getDefaultToolkit().getScreenResolution();
-		font = new Font("Consolas", Font.PLAIN, (int) (fontSize * this.getPPU()));
-		AffineTransform at = new AffineTransform();
-		at.scale(1.0, -1.0);
-		font = font.deriveFont(at);
-		//Gets the width of the font IN SPACE UNITS
-		fontWidth = font.getStringBounds("A", new FontRenderContext(new AffineTransform(), true, true)).getWidth() / this.getPPU();
+		gridChanged = true;
+		rebase();
+		updateGridStep();
+		if (font != null) //The font is the same size in pixels at any zoom, so it only has to be made once
+			return;
+		fontSize = 72.0 * fontHeight / getScreenResolution();
+		font = LabelCache.getFont((int) fontSize);
+		labels.setFont(font);
+		//Gets the width of the font IN PIXELS
+		fontWidth = font.getStringBounds("A", new FontRenderContext(new AffineTransform(), true, true)).getWidth();
+	}
+	
+	//There is no screen to ask when running headless (Eg. in the benchmarks), so the usual 96 dpi is used then
+	private static int getScreenResolution()
+	{
+		if (screenResolution == 0)
+			screenResolution = GraphicsEnvironment.isHeadless() ? 96 : Toolkit.getDefaultToolkit().getScreenResolution();
+		return screenResolution;
 	}
 	
-	private static Color getColor(int col)
+	private static class Shapes
 	{
-		return new Color((col >> 16) & 0xFF, (col >> 8) & 0xFF, (col) & 0xFF, (col >> 24) & 0xFF);
+		Line2D.Double line = new Line2D.Double();
+		Rectangle2D.Double rect = new Rectangle2D.Double();
+		Ellipse2D.Double oval = new Ellipse2D.Double();
+		double[] box = new double[4], clipped = new double[4]; //Bounding box and clipped endpoints of a line, see renderLines()
 	}
 }
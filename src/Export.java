@@ -0,0 +1,44 @@
+import java.io.File;
+import java.io.IOException;
+
+/* Writes a saved scene to a PNG (Or an SVG, if the file name ends with .svg) without opening a window:
+ *   java Export <scene file> <image.png|.svg> <width> <height> [ppu] [centre x] [centre y]
+ * This is its own class rather than a flag of Main because Main is a Canvas, and loading any AWT Component reads java.awt.headless,
+ * so it has to be set before Main (Or anything else that extends Component) is touched
+ */
+public class Export
+{
+	private static final int DEFAULT_PPU = 50; //Same as Main's
+	
+	public static void main(String[] args)
+	{
+		System.setProperty("java.awt.headless", "true");
+		if (args.length < 4)
+		{
+			System.err.println("Usage: java Export <scene file> <image.png|.svg> <width> <height> [ppu] [centre x] [centre y]");
+			System.exit(2);
+		}
+		try
+		{
+			Space space = new Space();
+			space.replace(SceneFile.load(new File(args[0])));
+			int width = Integer.parseInt(args[2]), height = Integer.parseInt(args[3]);
+			double ppu = args.length > 4 ? Double.parseDouble(args[4]) : DEFAULT_PPU;
+			double x = args.length > 5 ? Double.parseDouble(args[5]) : 0, y = args.length > 6 ? Double.parseDouble(args[6]) : 0;
+			int threads = Integer.getInteger("stline.renderThreads", Runtime.getRuntime().availableProcessors());
+			
+			long start = System.nanoTime();
+			int count = space.getLines().size();
+			if (args[1].toLowerCase().endsWith(".svg"))
+				count = new SvgExport(space, x, y, ppu, width, height).writeSvg(new File(args[1]));
+			else
+				new ImageExport(space, x, y, ppu, width, height).writePng(new File(args[1]), threads);
+			System.out.printf("Wrote %dx%d image of %d lines to %s in %.1f s%n", width, height, count, args[1], (System.nanoTime() - start) / 1e9);
+		}
+		catch (IOException | IllegalArgumentException e)
+		{
+			System.err.println("Could not export: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+//Geometry shared by components, the LineStore and the Camera
+//All three kinds of lines are stored as two points (x1, y1) and (x2, y2), and the kind decides which part of the infinite line through them is drawn:
+//Points of the line are (x1, y1) + t * (x2 - x1, y2 - y1), with t going from minT(kind) to maxT(kind)
+public class Geometry
+{
+	public static double minT(int kind)
+	{
+		return kind == LineStore.LINE ? Double.NEGATIVE_INFINITY : 0;
+	}
+	
+	public static double maxT(int kind)
+	{
+		return kind == LineStore.SEGMENT ? 1 : Double.POSITIVE_INFINITY;
+	}
+	
+	//Puts the axis-aligned bounding box of a line of the given kind in out, as {xLeft, yUp, xRight, yDown} (Same order as Camera.getBounds())
+	//Sides the line goes on forever towards are infinite
+	public static void bounds(int kind, double x1, double y1, double x2, double y2, double[] out)
+	{
+		double dx = x2 - x1, dy = y2 - y1;
+		double t0 = minT(kind), t1 = maxT(kind);
+		
+		//x and y are each either constant along the line, or go from their value at t0 to their value at t1
+		double xa = dx == 0 ? x1 : x1 + t0 * dx, xb = dx == 0 ? x1 : x1 + t1 * dx;
+		double ya = dy == 0 ? y1 : y1 + t0 * dy, yb = dy == 0 ? y1 : y1 + t1 * dy;
+		out[0] = Math.min(xa, xb);
+		out[1] = Math.max(ya, yb);
+		out[2] = Math.max(xa, xb);
+		out[3] = Math.min(ya, yb);
+	}
+	
+	//Whether two boxes in {xLeft, yUp, xRight, yDown} form overlap
+	public static boolean overlaps(double xLeft1, double yUp1, double xRight1, double yDown1, double xLeft2, double yUp2, double xRight2, double yDown2)
+	{
+		return xLeft1 <= xRight2 && xLeft2 <= xRight1 && yDown1 <= yUp2 && yDown2 <= yUp1;
+	}
+	
+	/* Liang-Barsky clipping. Cuts the part of the line from t0 to t1 down to the part inside the box, and puts its endpoints in out as {x1, y1, x2, y2}
+	 * Returns false if no part of it is inside the box
+	 * Every edge of the box is written as p*t <= q. Edges the line goes into the box through raise t0, edges it leaves through lower t1
+	 */
+	public static boolean clip(double x1, double y1, double x2, double y2, double t0, double t1, double xLeft, double yUp, double xRight, double yDown, double[] out)
+	{
+		double dx = x2 - x1, dy = y2 - y1;
+		
+		for (int edge = 0; edge < 4; edge++)
+		{
+			double p, q;
+			switch (edge)
+			{
+				case 0: //Left
+					p = -dx;
+					q = x1 - xLeft;
+					break;
+				case 1: //Right
+					p = dx;
+					q = xRight - x1;
+					break;
+				case 2: //Bottom
+					p = -dy;
+					q = y1 - yDown;
+					break;
+				default: //Top
+					p = dy;
+					q = yUp - y1;
+					break;
+			}
+			
+			if (p == 0)
+			{
+				if (q < 0) //Parallel to this edge and outside of it
+					return false;
+				continue;
+			}
+			double r = q / p;
+			if (p < 0)
+				t0 = Math.max(t0, r);
+			else
+				t1 = Math.min(t1, r);
+			if (t0 > t1)
+				return false;
+		}
+		
+		out[0] = x1 + t0 * dx;
+		out[1] = y1 + t0 * dy;
+		out[2] = x1 + t1 * dx;
+		out[3] = y1 + t1 * dy;
+		return true;
+	}
+}
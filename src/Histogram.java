@@ -0,0 +1,79 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Histogram of durations in nanoseconds with a fixed set of buckets, which can be recorded into from any thread without locking
+//Buckets are spaced exponentially, four per doubling of microseconds, so percentiles come out within about 20% of the real value
+public class Histogram
+{
+	private static final int SUB_BUCKETS = 4; //Buckets per doubling
+	private static final int BUCKETS = 1 + 32 * SUB_BUCKETS; //Bucket 0 is everything under 1 microsecond, the last one goes up to about an hour
+	
+	private AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private AtomicLong count = new AtomicLong();
+	private AtomicLong max = new AtomicLong();
+	
+	public void record(long nanos)
+	{
+		counts.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		
+		long prev = max.get();
+		while (nanos > prev && !max.compareAndSet(prev, nanos))
+			prev = max.get();
+	}
+	
+	//Returns the duration (In nanoseconds) that fraction p (Eg. 0.99) of the recorded durations are at or under. It's the upper end of the bucket the percentile falls in
+	public long percentile(double p)
+	{
+		long total = count.get();
+		if (total == 0)
+			return 0;
+		long rank = (long) Math.ceil(p * total);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += counts.get(i);
+			if (seen >= rank)
+				return Math.min(upperBound(i), getMax());
+		}
+		return getMax();
+	}
+	
+	public long getMax()
+	{
+		return max.get();
+	}
+	
+	public long getCount()
+	{
+		return count.get();
+	}
+	
+	public void reset()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+		count.set(0);
+		max.set(0);
+	}
+	
+	private static int bucket(long nanos)
+	{
+		long micros = nanos / 1000;
+		if (micros < 1)
+			return 0;
+		int log = 63 - Long.numberOfLeadingZeros(micros); //Whole part of log2(micros)
+		int sub = log >= 2 ? (int) (micros >> (log - 2)) & (SUB_BUCKETS - 1) : (int) (micros << (2 - log)) & (SUB_BUCKETS - 1); //The two bits after the leading one
+		return Math.min(BUCKETS - 1, 1 + log * SUB_BUCKETS + sub);
+	}
+	
+	//Largest duration in nanoseconds that falls in bucket i
+	private static long upperBound(int i)
+	{
+		if (i == 0)
+			return 999;
+		int log = (i - 1) / SUB_BUCKETS, sub = (i - 1) % SUB_BUCKETS;
+		double micros = Math.pow(2, log) * (1 + (sub + 1) / (double) SUB_BUCKETS);
+		return (long) (micros * 1000) - 1;
+	}
+}
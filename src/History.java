@@ -0,0 +1,142 @@
+import java.util.ArrayDeque;
+
+/* Undo and redo history of a Space, kept as a log of the changes made to it rather than copies of the whole space
+ * Adding lines is logged as just the range of indices that were added, since the lines themselves are still in the space. Only when
+ * that is undone do the lines get moved out of the space into the log, so redo can put them back
+ * Removed lines are moved into the log, and replacing the whole LineStore (Eg. clearing the space or opening a scene) keeps the old store as it is
+ * So every step costs O(1) to log (Apart from the lines it removes from the space, which have to be kept somewhere to bring them back)
+ *
+ * The oldest steps are forgotten once there are more than maxDepth of them, or the lines kept in the log take up more than maxBytes
+ * The step that was just logged, undone or redone is never forgotten, and doesn't count towards maxBytes, so one step bigger than that
+ * (Eg. undoing the opening of a huge scene) can still be redone, without throwing the rest of the history away
+ */
+public class History
+{
+	private static final int ADD = 0, REMOVE = 1, REPLACE = 2;
+	
+	private int maxDepth;
+	private long maxBytes;
+	
+	private ArrayDeque<Step> undo = new ArrayDeque<Step>(), redo = new ArrayDeque<Step>();
+	private long bytes; //Bytes of line data held by the steps in both stacks
+	
+	public History(int maxDepth, long maxBytes)
+	{
+		this.maxDepth = maxDepth;
+		this.maxBytes = maxBytes;
+	}
+	
+	//Lines from index 'from' to index 'to' (Excluding 'to') were added to the end of the space
+	public void added(int from, int to)
+	{
+		Step step = new Step(ADD);
+		step.from = from;
+		step.to = to;
+		log(step);
+	}
+	
+	//The lines in 'removed' were removed from the end of the space, starting at index 'from'
+	public void removed(int from, LineStore removed)
+	{
+		Step step = new Step(REMOVE);
+		step.from = from;
+		step.lines = removed;
+		log(step);
+	}
+	
+	//The LineStore of the space was replaced, 'old' is the store it had before
+	public void replaced(LineStore old)
+	{
+		Step step = new Step(REPLACE);
+		step.lines = old;
+		log(step);
+	}
+	
+	public void undo(Space space)
+	{
+		if (undo.isEmpty())
+			return;
+		Step step = undo.removeLast();
+		bytes -= step.bytes();
+		apply(space, step);
+		redo.addLast(step);
+		bytes += step.bytes();
+		trim(step);
+	}
+	
+	public void redo(Space space)
+	{
+		if (redo.isEmpty())
+			return;
+		Step step = redo.removeLast();
+		bytes -= step.bytes();
+		apply(space, step);
+		undo.addLast(step);
+		bytes += step.bytes();
+		trim(step);
+	}
+	
+	//Does the opposite of what the step did, and turns the step into its opposite, so applying it again undoes the undo
+	private void apply(Space space, Step step)
+	{
+		switch (step.type)
+		{
+			case ADD: //Move the added lines out of the space
+				step.lines = space.removeFrom(step.from);
+				step.type = REMOVE;
+				break;
+			case REMOVE: //Put the removed lines back
+				space.append(step.lines);
+				step.to = step.from + step.lines.size();
+				step.lines = null;
+				step.type = ADD;
+				break;
+			case REPLACE: //Swap the stores back
+				step.lines = space.swapLines(step.lines);
+				break;
+		}
+	}
+	
+	private void log(Step step)
+	{
+		for (Step s : redo)
+			bytes -= s.bytes();
+		redo.clear();
+		undo.addLast(step);
+		bytes += step.bytes();
+		trim(step);
+	}
+	
+	//Forgets the oldest steps until the history fits in maxDepth and maxBytes, apart from 'last' (The step just logged or applied). Undo steps go first, as redo steps are lost on the next change anyway
+	private void trim(Step last)
+	{
+		while (undo.size() + redo.size() > maxDepth || bytes - last.bytes() > maxBytes)
+		{
+			Step step;
+			if (!undo.isEmpty() && undo.peekFirst() != last)
+				step = undo.removeFirst();
+			else if (!redo.isEmpty() && redo.peekFirst() != last)
+				step = redo.removeFirst();
+			else
+				break;
+			bytes -= step.bytes();
+		}
+	}
+	
+	private static class Step
+	{
+		int type;
+		int from, to;
+		LineStore lines; //Lines that aren't in the space (Removed ones, or the old store for REPLACE)
+		
+		Step(int type)
+		{
+			this.type = type;
+		}
+		
+		long bytes()
+		{
+			return lines == null ? 0 : lines.getBytes();
+		}
+	}
+}
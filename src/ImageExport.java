@@ -0,0 +1,164 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/* Draws a Space as a PNG of any size (Eg. 20000 x 20000 for a poster) without ever having the whole image in memory
+ * The image is cut into bands of TILE_SIZE rows, and each band into tiles of TILE_SIZE x TILE_SIZE pixels. Every tile is drawn by its own Camera the same way Main draws the screen, grid first and lines on top
+ * The tiles of a band are drawn in parallel, and the next band is already being drawn while the rows of the last one are written to the PngWriter, so at most two bands are in memory at a time
+ * Before a band is drawn, the lines that come near it are picked out once, and its tiles only go through those, rather than every tile going through every line
+ */
+public class ImageExport
+{
+	public static final int TILE_SIZE = 256;
+	private static final int MARGIN = 2; //Lines within this many pixels outside a tile are still drawn on it, so their anti-aliased edges aren't cut off at the border
+	
+	private Space space;
+	private double ppu;
+	private int width, height;
+	private double[] imageBounds; //{xLeft, yUp, xRight, yDown} of the whole image in space
+	
+	//Image of width x height pixels, showing the space around (centerX, centerY) at ppu pixels per unit
+	public ImageExport(Space space, double centerX, double centerY, double ppu, int width, int height)
+	{
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Image must be at least 1x1, not " + width + "x" + height);
+		this.space = space;
+		this.ppu = ppu;
+		this.width = width;
+		this.height = height;
+		imageBounds = new double[] {centerX - width / 2.0 / ppu, centerY + height / 2.0 / ppu, centerX + width / 2.0 / ppu, centerY - height / 2.0 / ppu};
+	}
+	
+	//Draws the image on 'threads' threads and writes it to file. Can be called from any thread, it draws the space as it was at the start even if it changes meanwhile
+	//If it fails (Or the thread is interrupted), the part of the file that was written is deleted
+	public void writePng(File file, int threads) throws IOException
+	{
+		LineStore lines = space.snapshot();
+		int bands = (height + TILE_SIZE - 1) / TILE_SIZE, columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+		OutputStream out = new FileOutputStream(file); //Opened before the try, so a file that couldn't be opened isn't deleted
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+		try (PngWriter png = new PngWriter(new BufferedOutputStream(out, 1 << 16), width, height))
+		{
+			int[] row = new int[width];
+			ForkJoinTask<BufferedImage>[] band = submitBand(pool, lines, 0, columns);
+			for (int by = 0; by < bands; by++)
+			{
+				ForkJoinTask<BufferedImage>[] next = by + 1 < bands ? submitBand(pool, lines, by + 1, columns) : null;
+				
+				//Puts each row of the band together from its tiles, and writes it
+				int rows = Math.min(TILE_SIZE, height - by * TILE_SIZE);
+				int[][] tiles = new int[columns][];
+				for (int bx = 0; bx < columns; bx++)
+					tiles[bx] = ((DataBufferInt) band[bx].join().getRaster().getDataBuffer()).getData();
+				for (int y = 0; y < rows; y++)
+				{
+					for (int bx = 0; bx < columns; bx++)
+					{
+						int tileWidth = Math.min(TILE_SIZE, width - bx * TILE_SIZE);
+						System.arraycopy(tiles[bx], y * tileWidth, row, bx * TILE_SIZE, tileWidth);
+					}
+					png.writeRow(row, 0);
+				}
+				band = next;
+			}
+		}
+		catch (IOException | RuntimeException | Error e) //png is already closed by now
+		{
+			file.delete();
+			throw e;
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private ForkJoinTask<BufferedImage>[] submitBand(ForkJoinPool pool, final LineStore lines, final int by, int columns)
+	{
+		final int[] near = near(lines, by * TILE_SIZE, Math.min(TILE_SIZE, height - by * TILE_SIZE));
+		ForkJoinTask<BufferedImage>[] tasks = (ForkJoinTask<BufferedImage>[]) new ForkJoinTask<?>[columns];
+		for (int bx = 0; bx < columns; bx++)
+		{
+			final int x = bx * TILE_SIZE, y = by * TILE_SIZE;
+			tasks[bx] = pool.submit(new Callable<BufferedImage>()
+			{
+				@Override
+				public BufferedImage call()
+				{
+					return drawTile(lines, near, x, y, Math.min(TILE_SIZE, width - x), Math.min(TILE_SIZE, height - y));
+				}
+			});
+		}
+		return tasks;
+	}
+	
+	//Indices of the lines whose bounding boxes come within MARGIN pixels of the h rows of the image from row y on
+	private int[] near(LineStore lines, int y, int h)
+	{
+		double margin = MARGIN / ppu;
+		double xLeft = imageBounds[0] - margin, xRight = imageBounds[2] + margin;
+		double yUp = imageBounds[1] - y / ppu + margin, yDown = imageBounds[1] - (y + h) / ppu - margin;
+		
+		double[] box = new double[4];
+		int[] near = new int[16];
+		int count = 0;
+		for (int i = 0; i < lines.size(); i++)
+		{
+			Geometry.bounds(lines.kind(i), lines.x1(i), lines.y1(i), lines.x2(i), lines.y2(i), box);
+			if (!Geometry.overlaps(box[0], box[1], box[2], box[3], xLeft, yUp, xRight, yDown))
+				continue;
+			if (count == near.length)
+				near = Arrays.copyOf(near, 2 * count);
+			near[count++] = i;
+		}
+		return Arrays.copyOf(near, count);
+	}
+	
+	//Draws the w x h pixels of the image whose top-left pixel is (x, y), with the lines in 'near'
+	private BufferedImage drawTile(LineStore lines, int[] near, int x, int y, int w, int h)
+	{
+		//A camera looking at just this tile. Labels stick to the edges of the whole image rather than the edges of the tile
+		Camera cam = new Camera(w / 2.0 / ppu, h / 2.0 / ppu, ppu);
+		cam.setPos(imageBounds[0] + (x + w / 2.0) / ppu, imageBounds[1] - (y + h / 2.0) / ppu);
+		cam.setLabelBounds(imageBounds);
+		
+		BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		Graphics2D bg = img.createGraphics();
+		try
+		{
+			//Same coordinate system and settings as Main uses for the screen
+			bg.translate(w / 2.0, h / 2.0);
+			bg.scale(1.0, -1.0);
+			bg.setBackground(Color.WHITE);
+			bg.clearRect(-w, -h, 2 * w, 2 * h);
+			bg.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			bg.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+			
+			cam.renderGrid(bg);
+			
+			//Lines are drawn straight from the LineStore rather than through cam.render(), as the tile cache would only ever be used once
+			double[] bounds = cam.getBounds();
+			double margin = MARGIN / ppu;
+			cam.translate(bg);
+			cam.renderLines(lines, near, near.length, bg, bounds[0] - margin, bounds[1] + margin, bounds[2] + margin, bounds[3] - margin);
+			cam.reset(bg);
+		}
+		finally
+		{
+			bg.dispose();
+		}
+		return img;
+	}
+}
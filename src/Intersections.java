@@ -0,0 +1,215 @@
+import java.util.Arrays;
+
+/* Finds where lines of a LineStore cross each other near a point, for snapping to intersections
+ * Storing every intersection isn't an option: n infinite lines can cross in n*(n-1)/2 points (Over a billion for 50k lines)
+ * Instead the lines themselves are indexed, by the angle of their normal and their c (Their normalized form, see LineStore), and kept up to date as lines are added and removed
+ * A line is within r of the point p exactly when |c - (a, b).p| <= r, so in each of ANGLE_CELLS columns of normal angles, the lines near p are the ones whose c is close to (a, b).p
+ * Every column keeps its lines sorted by c, so a query is a binary search and a short scan per column rather than a look at every line
+ *
+ * The lines found are then gone through from the nearest one out, each intersected with the ones before it. A crossing is at least as far from p as both of its lines,
+ * so once the next line is farther away than the best crossing so far, no later one can beat it, and the rest are skipped
+ */
+public class Intersections
+{
+	private static final int ANGLE_CELLS = 512; //Columns of the half circle of normal angles, [-90, 90] degrees
+	private static final double ANGLE_STEP = Math.PI / ANGLE_CELLS;
+	private static final double C_STEP = 1.0 / 1024; //c is rounded down to a multiple of this in the keys
+	private static final double PARALLEL = 1e-9; //Lines whose normals are closer than this to parallel are treated as not crossing
+	
+	//Normal of the middle of every column, from the one starting at -90 degrees to the one starting at 90
+	private static final double[] COS = new double[ANGLE_CELLS + 1], SIN = new double[ANGLE_CELLS + 1];
+	static
+	{
+		for (int t = 0; t <= ANGLE_CELLS; t++)
+		{
+			double angle = (t - ANGLE_CELLS / 2 + 0.5) * ANGLE_STEP;
+			COS[t] = Math.cos(angle);
+			SIN[t] = Math.sin(angle);
+		}
+	}
+	
+	//Lines of every column as keys (See key()). Lines are added at the end, and a column is only sorted again when a query or a removal needs it to be,
+	//so adding a lot of lines at once doesn't move the ones already there for every one of them
+	private long[][] columns = new long[ANGLE_CELLS + 1][];
+	private int[] sizes = new int[ANGLE_CELLS + 1];
+	private boolean[] unsorted = new boolean[ANGLE_CELLS + 1];
+	private int size;
+	
+	private long[] near = new long[64]; //Lines near the point of a query, each as the bits of its distance (As a float) and its index, so that sorting them sorts by distance
+	
+	public Intersections()
+	{
+		for (int t = 0; t <= ANGLE_CELLS; t++)
+			columns[t] = new long[4];
+	}
+	
+	//Adds line i of the store to the index
+	public void insert(LineStore lines, int i)
+	{
+		int t = column(lines, i);
+		long key = key(lines.c(i), i);
+		int n = sizes[t];
+		if (n == columns[t].length)
+			columns[t] = Arrays.copyOf(columns[t], n * 2);
+		if (n > 0 && columns[t][n - 1] > key)
+			unsorted[t] = true;
+		columns[t][n] = key;
+		sizes[t]++;
+		size++;
+	}
+	
+	//Takes line i of the store out of the index. It must not have been changed since it was inserted
+	public void remove(LineStore lines, int i)
+	{
+		int t = column(lines, i);
+		sort(t);
+		long[] column = columns[t];
+		int k = Arrays.binarySearch(column, 0, sizes[t], key(lines.c(i), i));
+		if (k < 0)
+			return;
+		System.arraycopy(column, k + 1, column, k, sizes[t] - k - 1);
+		sizes[t]--;
+		size--;
+	}
+	
+	//Takes the lines from index 'from' to the end of the store out of the index
+	public void removeFrom(LineStore lines, int from)
+	{
+		if ((long) (lines.size() - from) * ANGLE_CELLS < size) //Few enough that finding each one is quicker than going through every column
+		{
+			for (int i = from; i < lines.size(); i++)
+				remove(lines, i);
+			return;
+		}
+		
+		for (int t = 0; t <= ANGLE_CELLS; t++)
+		{
+			long[] column = columns[t];
+			int kept = 0;
+			for (int k = 0; k < sizes[t]; k++)
+				if ((int) column[k] < from)
+					column[kept++] = column[k];
+			size -= sizes[t] - kept;
+			sizes[t] = kept;
+		}
+	}
+	
+	public void clear()
+	{
+		Arrays.fill(sizes, 0);
+		Arrays.fill(unsorted, false);
+		size = 0;
+	}
+	
+	//Finds the intersection of two lines closest to (x, y) within radius of it, and puts it in out as {x, y}. Returns false if there is none
+	//Every line in the store must be in the index
+	public boolean nearest(LineStore lines, double x, double y, double radius, double[] out)
+	{
+		//Across half a column, (a, b).p changes by at most |p| per radian
+		double reach = Math.hypot(x, y) * ANGLE_STEP / 2 + radius;
+		int count = 0;
+		for (int t = 0; t <= ANGLE_CELLS; t++)
+		{
+			if (sizes[t] == 0)
+				continue;
+			sort(t);
+			long[] column = columns[t];
+			double c = x * COS[t] + y * SIN[t];
+			long last = key(c + reach, -1); //-1 as an int is all ones, the largest index bits a key can have
+			for (int k = lowerBound(column, sizes[t], key(c - reach, 0)); k < sizes[t] && column[k] <= last; k++)
+			{
+				int i = (int) column[k];
+				double dist = Math.abs(lines.a(i) * x + lines.b(i) * y - lines.c(i)); //(a, b) is a unit normal, so this is the distance of the point from the infinite line
+				if (dist > radius || !withinExtent(lines, i, x, y, radius))
+					continue;
+				if (count == near.length)
+					near = Arrays.copyOf(near, count * 2);
+				near[count++] = (long) Float.floatToIntBits((float) dist) << 32 | i; //Distances are never negative, so their float bits sort the same way they do
+			}
+		}
+		Arrays.sort(near, 0, count);
+		
+		boolean found = false;
+		double bestDist = radius * radius;
+		for (int m = 0; m < count; m++)
+		{
+			if (Float.intBitsToFloat((int) (near[m] >>> 32)) > (float) Math.sqrt(bestDist)) //This line and all after it are farther than the best crossing
+				break;
+			int i = (int) near[m];
+			double a1 = lines.a(i), b1 = lines.b(i), c1 = lines.c(i);
+			for (int n = 0; n < m; n++)
+			{
+				int j = (int) near[n];
+				double a2 = lines.a(j), b2 = lines.b(j), c2 = lines.c(j);
+				
+				//Solves a1*x + b1*y = c1 and a2*x + b2*y = c2 with Cramer's rule
+				double det = a1 * b2 - a2 * b1;
+				if (Math.abs(det) < PARALLEL)
+					continue;
+				double ix = (c1 * b2 - c2 * b1) / det, iy = (a1 * c2 - a2 * c1) / det;
+				
+				double dx = ix - x, dy = iy - y;
+				double dist = dx * dx + dy * dy;
+				if (dist < bestDist && withinExtent(lines, i, ix, iy, 1e-9) && withinExtent(lines, j, ix, iy, 1e-9))
+				{
+					bestDist = dist;
+					out[0] = ix;
+					out[1] = iy;
+					found = true;
+				}
+			}
+		}
+		return found;
+	}
+	
+	private void sort(int t)
+	{
+		if (unsorted[t])
+		{
+			Arrays.sort(columns[t], 0, sizes[t]);
+			unsorted[t] = false;
+		}
+	}
+	
+	//Index of the first key in the sorted column that is >= key
+	private static int lowerBound(long[] column, int size, long key)
+	{
+		int low = 0, high = size;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (column[mid] < key)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+	
+	//The column line i goes in, by the angle of its normal. a is never negative, so the angle is in [-90, 90] degrees
+	private static int column(LineStore lines, int i)
+	{
+		int t = (int) Math.floor(Math.atan2(lines.b(i), lines.a(i)) / ANGLE_STEP) + ANGLE_CELLS / 2;
+		return Math.max(0, Math.min(ANGLE_CELLS, t));
+	}
+	
+	//Packs c (Rounded down to C_STEP) and a line index into a long that sorts by c first. A c too big for an int just ends up at the end, which keeps the order right
+	private static long key(double c, int i)
+	{
+		return (long) (int) Math.floor(c / C_STEP) << 32 | (i & 0xFFFFFFFFL);
+	}
+	
+	//Whether the point (x, y), which is near the infinite line through line i, is also within 'slack' of the part of it that line i covers (See Geometry)
+	private static boolean withinExtent(LineStore lines, int i, double x, double y, double slack)
+	{
+		int kind = lines.kind(i);
+		if (kind == LineStore.LINE)
+			return true;
+		double x1 = lines.x1(i), y1 = lines.y1(i);
+		double dx = lines.x2(i) - x1, dy = lines.y2(i) - y1;
+		double len = Math.hypot(dx, dy);
+		double t = ((x - x1) * dx + (y - y1) * dy) / (len * len); //Parameter of the closest point on the line
+		double tSlack = slack / len;
+		return t >= Geometry.minT(kind) - tSlack && t <= Geometry.maxT(kind) + tSlack;
+	}
+}
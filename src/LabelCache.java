@@ -0,0 +1,102 @@
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Keeps the text of the grid coordinates laid out as GlyphVectors, so drawing a label that was drawn before needs no string building or text layout
+//A label is the number digits x 10^exponent in one font. Least recently used labels are thrown away once there are more than maxLabels
+public class LabelCache
+{
+	//Fonts flipped upside down (To be drawn with y going up), by size in points. Shared by every cache
+	private static final Map<Integer, Font> fonts = new ConcurrentHashMap<Integer, Font>();
+	
+	private static final FontRenderContext FRC = new FontRenderContext(new AffineTransform(), true, true);
+	
+	private Font font;
+	private LinkedHashMap<Long, GlyphVector> labels;
+	
+	public LabelCache(final int maxLabels)
+	{
+		labels = new LinkedHashMap<Long, GlyphVector>(16, 0.75f, true) //Access order, so the eldest entry is the least recently used one
+		{
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, GlyphVector> eldest)
+			{
+				return size() > maxLabels;
+			}
+		};
+	}
+	
+	//Returns the font of the given size, made the first time it is asked for
+	public static Font getFont(int size)
+	{
+		Font font = fonts.get(size);
+		if (font == null)
+		{
+			AffineTransform at = new AffineTransform();
+			at.scale(1.0, -1.0);
+			font = new Font("Consolas", Font.PLAIN, size).deriveFont(at);
+			fonts.put(size, font);
+		}
+		return font;
+	}
+	
+	//Sets the font labels are laid out in. Labels laid out in another font are thrown away
+	public void setFont(Font font)
+	{
+		if (font.equals(this.font))
+			return;
+		this.font = font;
+		labels.clear();
+	}
+	
+	//Returns the label of digits x 10^exponent, laid out in the current font
+	public GlyphVector get(long digits, int exponent)
+	{
+		long key = digits << 8 | (exponent & 0xFF); //Exponents of the grid are far from needing more than 8 bits
+		GlyphVector glyphs = labels.get(key);
+		if (glyphs == null)
+		{
+			glyphs = font.createGlyphVector(FRC, format(digits, exponent));
+			labels.put(key, glyphs);
+		}
+		return glyphs;
+	}
+	
+	public void clear()
+	{
+		labels.clear();
+	}
+	
+	//Writes out digits x 10^exponent exactly (Eg. "0.25" rather than "0.25000000000000006")
+	public static String format(long digits, int exponent)
+	{
+		if (exponent >= 0)
+		{
+			StringBuilder str = new StringBuilder().append(digits);
+			for (int i = 0; i < exponent; i++)
+				str.append('0');
+			return str.toString();
+		}
+		
+		//Puts the decimal point -exponent digits from the right, padding with zeroes, then takes off the trailing zeroes
+		StringBuilder str = new StringBuilder().append(Math.abs(digits));
+		while (str.length() <= -exponent)
+			str.insert(0, '0');
+		str.insert(str.length() + exponent, '.');
+		int end = str.length();
+		while (str.charAt(end - 1) == '0')
+			end--;
+		if (str.charAt(end - 1) == '.')
+			end--;
+		str.setLength(end);
+		if (digits < 0)
+			str.insert(0, '-');
+		return str.toString();
+	}
+}
@@ -0,0 +1,40 @@
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+//Collects lines into one Path2D per color, so that all lines of a color can be drawn with a single draw() call
+//The paths are reset and used again for the next batch, so a LineBatch should be kept around (One per thread, as it isn't thread safe)
+public class LineBatch
+{
+	private HashMap<Integer, Path2D.Double> paths = new HashMap<Integer, Path2D.Double>();
+	private List<Integer> used = new ArrayList<Integer>(); //Colors that have lines in this batch, in the order they were first used
+	
+	public void add(int col, double x1, double y1, double x2, double y2)
+	{
+		Path2D.Double path = paths.get(col);
+		if (path == null)
+		{
+			path = new Path2D.Double();
+			paths.put(col, path);
+		}
+		if (path.getCurrentPoint() == null)
+			used.add(col);
+		path.moveTo(x1, y1);
+		path.lineTo(x2, y2);
+	}
+	
+	//Draws every color's path and empties the batch
+	public void draw(Graphics2D bg)
+	{
+		for (int i = 0; i < used.size(); i++)
+		{
+			Path2D.Double path = paths.get(used.get(i));
+			bg.setColor(Palette.getColor(used.get(i)));
+			bg.draw(path);
+			path.reset();
+		}
+		used.clear();
+	}
+}
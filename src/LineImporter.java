@@ -0,0 +1,142 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.Semaphore;
+
+import javax.swing.SwingWorker;
+
+/* Imports lines from a text file into a Space, on a background thread
+ * Every line of the file is either "x1,y1,x2,y2" (Two points on the line) or "slope,intercept" (The line y = slope*x + intercept)
+ * Blank lines, lines starting with '#' and lines that don't parse (Eg. a header, or NaN and Infinity, which Double.parseDouble would take) are skipped
+ *
+ * The file is read in batches of BATCH_SIZE lines into a LineStore, and each batch is submitted to the space as one command, which Main carries out with the other pending ones at the next frame
+ * Only MAX_PENDING batches can be waiting to be added at a time, so memory stays the same however big the file is
+ */
+public class LineImporter extends SwingWorker<Long, Void>
+{
+	private static final int BATCH_SIZE = 4096;
+	private static final int MAX_PENDING = 4;
+	
+	private File file;
+	private Space space;
+	private int col;
+	private Runnable onProgress; //Run on the event dispatch thread once the import is done. The batches show up on their own as the space carries them out
+	
+	private Semaphore pending = new Semaphore(MAX_PENDING);
+	private volatile long skipped;
+	
+	public LineImporter(File file, Space space, int col, Runnable onProgress)
+	{
+		this.file = file;
+		this.space = space;
+		this.col = col;
+		this.onProgress = onProgress;
+	}
+	
+	@Override
+	protected Long doInBackground() throws IOException, InterruptedException
+	{
+		long imported = 0;
+		LineStore batch = new LineStore();
+		double[] values = new double[4];
+		
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))
+		{
+			String row;
+			while ((row = reader.readLine()) != null && !isCancelled())
+			{
+				int n = parse(row, values);
+				if (n == 2) //slope, intercept. Points at x = 0 and x = 1
+				{
+					values[3] = values[0] + values[1];
+					values[0] = 0;
+					values[2] = 1;
+				}
+				if ((n != 2 && n != 4) || (values[0] == values[2] && values[1] == values[3])
+					|| Double.isInfinite(values[2] - values[0]) || Double.isInfinite(values[3] - values[1])) //Finite points so far apart the line through them can't be worked out
+				{
+					if (n != 0)
+						skipped++;
+					continue;
+				}
+				
+				batch.add(LineStore.LINE, values[0], values[1], values[2], values[3], col);
+				if (batch.size() == BATCH_SIZE)
+				{
+					submitBatch(batch);
+					imported += batch.size();
+					batch = new LineStore();
+				}
+			}
+		}
+		if (batch.size() > 0)
+		{
+			submitBatch(batch);
+			imported += batch.size();
+		}
+		return imported;
+	}
+	
+	//Waits until there's room for another pending batch, then submits it to the space
+	private void submitBatch(final LineStore batch) throws InterruptedException
+	{
+		pending.acquire();
+		space.submit(new Space.Command()
+		{
+			@Override
+			public void apply(Space space)
+			{
+				space.addAll(batch); //One undo step per batch
+				pending.release();
+			}
+		});
+	}
+	
+	@Override
+	protected void done()
+	{
+		try
+		{
+			long imported = get();
+			if (skipped > 0)
+				System.err.println("Imported " + imported + " lines from " + file + ", skipped " + skipped + " rows that couldn't be read");
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+		onProgress.run();
+	}
+	
+	//Parses up to 4 comma separated numbers of row into values, and returns how many there were. Returns 0 for blank and comment rows, -1 if a field isn't a finite number
+	private static int parse(String row, double[] values)
+	{
+		String trimmed = row.trim();
+		if (trimmed.isEmpty() || trimmed.startsWith("#"))
+			return 0;
+		int n = 0, start = 0, length = row.length();
+		while (start <= length)
+		{
+			int end = row.indexOf(',', start);
+			if (end == -1)
+				end = length;
+			if (n == values.length)
+				return -1;
+			try
+			{
+				values[n] = Double.parseDouble(row.substring(start, end).trim());
+			}
+			catch (NumberFormatException e)
+			{
+				return -1;
+			}
+			if (Double.isNaN(values[n]) || Double.isInfinite(values[n])) //"NaN", "Infinity" and numbers too big for a double, like 1e400
+				return -1;
+			n++;
+			start = end + 1;
+		}
+		return n;
+	}
+}
@@ -0,0 +1,237 @@
+import java.util.Arrays;
+
+/* Compact storage of all the lines in a Space. Instead of one Line object (and two Vector2i objects) per line,
+ * every property of the lines is kept in its own primitive array, with line 'i' being index 'i' of every array
+ *
+ * The arrays are cut into chunks of CHUNK_SIZE lines, so that snapshot() can hand out a copy of the store that other threads can read while this one keeps changing,
+ * by sharing the chunks rather than copying them. A shared chunk only gets copied when a line that a snapshot can see is written over,
+ * which only happens after lines were removed, since lines are otherwise only ever added to the end. Growing the store never copies the lines either
+ */
+public class LineStore
+{
+	//Kinds of lines that can be stored, see Geometry for what part of the line each of them covers
+	public static final byte LINE = 0, SEGMENT = 1, RAY = 2;
+	
+	private static final int CHUNK_SHIFT = 12, CHUNK_SIZE = 1 << CHUNK_SHIFT, CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final int INITIAL_CAPACITY = 64; //The first chunk starts this small and doubles up to CHUNK_SIZE, as lots of stores only ever hold a few lines (Eg. every removed line in History)
+	
+	private Chunk[] chunks = {new Chunk(INITIAL_CAPACITY)};
+	private int chunkCount = 1;
+	
+	//Copy on write. Every snapshot raises the version, and shares the chunks (And the chunks array) as they are at that point
+	//A chunk (Or the chunks array) that hasn't been copied since the last snapshot has to be copied before anything a snapshot might see in it is written over
+	private int version;
+	private int[] copiedAt = new int[1]; //Version at which chunk k was made or last copied
+	private int chunksCopiedAt; //Same for the chunks array
+	private int frozen; //Lines below this might be seen by a snapshot. Lines above it can be written in place, whoever shares their chunk
+	private boolean readOnly; //Snapshots can't be changed
+	
+	private int size;
+	
+	public LineStore()
+	{
+	}
+	
+	//A snapshot, sharing the given chunks
+	private LineStore(Chunk[] chunks, int size)
+	{
+		this.chunks = chunks;
+		this.size = size;
+		readOnly = true;
+	}
+	
+	//Adds a line of the given kind through (x1, y1) and (x2, y2) and returns its index. The two points must not be the same
+	public int add(byte kind, double x1, double y1, double x2, double y2, int col)
+	{
+		Chunk chunk = writable(size);
+		int j = size & CHUNK_MASK;
+		
+		chunk.kind[j] = kind;
+		chunk.x1[j] = x1;
+		chunk.y1[j] = y1;
+		chunk.x2[j] = x2;
+		chunk.y2[j] = y2;
+		chunk.col[j] = col;
+		
+		//(-dy, dx) is perpendicular to the line. We flip it so that a > 0 (or b > 0 for horizontal lines) so that the same line always has the same (a, b, c)
+		double dx = x2 - x1, dy = y2 - y1;
+		double len = Math.hypot(dx, dy);
+		double a = -dy / len, b = dx / len;
+		if (a < 0 || (a == 0 && b < 0))
+		{
+			a = -a;
+			b = -b;
+		}
+		chunk.a[j] = a;
+		chunk.b[j] = b;
+		chunk.c[j] = a * x1 + b * y1;
+		
+		return size++;
+	}
+	
+	//Removes the lines from index 'from' to the end, and returns them in a new store
+	public LineStore split(int from)
+	{
+		checkWritable();
+		LineStore tail = new LineStore();
+		for (int i = from; i < size; i++)
+			tail.add(kind(i), x1(i), y1(i), x2(i), y2(i), col(i));
+		size = from;
+		return tail;
+	}
+	
+	public void clear()
+	{
+		checkWritable();
+		size = 0;
+	}
+	
+	//Returns a store with the lines this one has right now, which never changes and can be read from any thread, however this one is changed after
+	//Takes O(1), as nothing is copied until it's written over. Must be called on the thread that changes this store
+	public LineStore snapshot()
+	{
+		if (readOnly)
+			return this;
+		version++;
+		frozen = Math.max(frozen, size);
+		return new LineStore(chunks, size);
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	//Roughly how much memory the lines in this store take up
+	public long getBytes()
+	{
+		return (long) size * (1 + 7 * 8 + 4);
+	}
+	
+	public byte kind(int i)
+	{
+		return chunks[i >> CHUNK_SHIFT].kind[i & CHUNK_MASK];
+	}
+	
+	public double x1(int i)
+	{
+		return chunks[i >> CHUNK_SHIFT].x1[i & CHUNK_MASK];
+	}
+	
+	public double y1(int i)
+	{
+		return chunks[i >> CHUNK_SHIFT].y1[i & CHUNK_MASK];
+	}
+	
+	public double x2(int i)
+	{
+		return chunks[i >> CHUNK_SHIFT].x2[i & CHUNK_MASK];
+	}
+	
+	public double y2(int i)
+	{
+		return chunks[i >> CHUNK_SHIFT].y2[i & CHUNK_MASK];
+	}
+	
+	public double a(int i)
+	{
+		return chunks[i >> CHUNK_SHIFT].a[i & CHUNK_MASK];
+	}
+	
+	public double b(int i)
+	{
+		return chunks[i >> CHUNK_SHIFT].b[i & CHUNK_MASK];
+	}
+	
+	public double c(int i)
+	{
+		return chunks[i >> CHUNK_SHIFT].c[i & CHUNK_MASK];
+	}
+	
+	public int col(int i)
+	{
+		return chunks[i >> CHUNK_SHIFT].col[i & CHUNK_MASK];
+	}
+	
+	//Returns the chunk line i goes in, ready to be written to. Adds a chunk at the end, makes the first one bigger or copies a shared one if needed
+	private Chunk writable(int i)
+	{
+		checkWritable();
+		int k = i >> CHUNK_SHIFT, j = i & CHUNK_MASK;
+		if (k == chunkCount)
+		{
+			//Snapshots never look past their own last chunk, so the new one can go in a shared chunks array as it is
+			if (chunkCount == chunks.length)
+			{
+				chunks = Arrays.copyOf(chunks, chunkCount * 2);
+				copiedAt = Arrays.copyOf(copiedAt, chunkCount * 2);
+				chunksCopiedAt = version;
+			}
+			chunks[chunkCount] = new Chunk(CHUNK_SIZE);
+			copiedAt[chunkCount++] = version;
+		}
+		else if (j >= chunks[k].kind.length) //Only the first chunk can be smaller than CHUNK_SIZE
+			replace(k, chunks[k].copy(Math.min(chunks[k].kind.length * 2, CHUNK_SIZE)));
+		else if (i < frozen && copiedAt[k] != version)
+			replace(k, chunks[k].copy(chunks[k].kind.length));
+		return chunks[k];
+	}
+	
+	private void replace(int k, Chunk chunk)
+	{
+		if (chunksCopiedAt != version)
+		{
+			chunks = chunks.clone();
+			chunksCopiedAt = version;
+		}
+		chunks[k] = chunk;
+		copiedAt[k] = version;
+	}
+	
+	private void checkWritable()
+	{
+		if (readOnly)
+			throw new UnsupportedOperationException("Snapshots of a LineStore can't be changed");
+	}
+	
+	//Lines k*CHUNK_SIZE to (k+1)*CHUNK_SIZE - 1 of the store
+	private static class Chunk
+	{
+		byte[] kind;
+		double[] x1, y1; //Start points
+		double[] x2, y2; //End points
+		
+		//Normalized form of every line, a*x + b*y = c with a^2 + b^2 = 1. It's worked out once here, so render doesn't have to find slope and intercept every frame
+		double[] a, b, c;
+		
+		int[] col;
+		
+		Chunk(int capacity)
+		{
+			kind = new byte[capacity];
+			x1 = new double[capacity];
+			y1 = new double[capacity];
+			x2 = new double[capacity];
+			y2 = new double[capacity];
+			a = new double[capacity];
+			b = new double[capacity];
+			c = new double[capacity];
+			col = new int[capacity];
+		}
+		
+		Chunk copy(int capacity)
+		{
+			Chunk copy = new Chunk(0);
+			copy.kind = Arrays.copyOf(kind, capacity);
+			copy.x1 = Arrays.copyOf(x1, capacity);
+			copy.y1 = Arrays.copyOf(y1, capacity);
+			copy.x2 = Arrays.copyOf(x2, capacity);
+			copy.y2 = Arrays.copyOf(y2, capacity);
+			copy.a = Arrays.copyOf(a, capacity);
+			copy.b = Arrays.copyOf(b, capacity);
+			copy.c = Arrays.copyOf(c, capacity);
+			copy.col = Arrays.copyOf(col, capacity);
+			return copy;
+		}
+	}
+}
@@ -2,9 +2,13 @@ import java.awt.BorderLayout;
 import java.awt.Canvas;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.DisplayMode;
+import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
@@ -12,10 +16,17 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
-import java.awt.image.BufferedImage;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferStrategy;
+import java.io.IOException;
 
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 
 import Utility.Vector2i;
 
@@ -27,6 +38,8 @@ public class Main extends Canvas implements MouseListener, MouseMotionListener,
 	private static final int RENDER_WIDTH = 800, RENDER_HEIGHT = 600;
 	
 	private final int DEFAULT_PPU = 50;
+	private final double SNAP_PIXELS = 15; //How close the mouse has to be to something to snap to it, on screen
+	private final int RENDER_THREADS = Integer.getInteger("stline.renderThreads", Runtime.getRuntime().availableProcessors()); //Can be set with -Dstline.renderThreads=n
 	
 	private Camera cam;
 	private Space space;
@@ -35,6 +48,7 @@ public class Main extends Canvas implements MouseListener, MouseMotionListener,
 	private volatile boolean[] keys = new boolean[200];
 	
 	private ACTION action = ACTION.IDLE;
+	private TOOL tool = TOOL.LINE; //What gets drawn when the left mouse button is dragged. L, S and R keys switch between lines, segments and rays
 	
 	private Component comp;
 	
@@ -42,8 +56,22 @@ public class Main extends Canvas implements MouseListener, MouseMotionListener,
 	
 	private Menu menu;
 	
-	private Vector2i prevSnap;
-	private Vector2i snap; //Coordinates of the point to which the mouse will snap to, in space
+	private Timer frameTimer; //Draws a frame at a fixed rate whenever something has changed, instead of drawing one for every input event
+	private boolean dirty; //Whether something has changed since the last frame was drawn
+	
+	//Input that hasn't been applied yet. Mouse moves and wheel turns are only applied once per frame, so however many events a fast mouse sends, only the latest position counts
+	private MouseEvent pendingMouseE;
+	private MouseWheelEvent pendingWheelE;
+	private int pendingWheelRotation;
+	
+	private boolean showStats = false; //Whether frame time and latency stats are drawn on the canvas. Toggled with F3
+	private long inputWhen; //Time of the oldest input event that hasn't been shown on screen yet, 0 if there is none
+	
+	//Mouse handling works on plain doubles, so moving the mouse doesn't make any objects
+	private double mouseX, mouseY; //Where the mouse is in space, as of the last updateSnap()
+	private boolean snapped; //Whether the mouse is snapping to a point right now
+	private double snapX, snapY; //Coordinates of the point to which the mouse will snap to, in space
+	private double[] snapPoint = new double[2];
 	
 	public static void main(String[] args)
 	{
@@ -67,7 +95,10 @@ public class Main extends Canvas implements MouseListener, MouseMotionListener,
 	{
 		cam = new Camera();
 		cam.calibrate(RENDER_WIDTH, RENDER_HEIGHT, DEFAULT_PPU);
+		cam.setRenderThreads(RENDER_THREADS);
+		RenderStats.register();
 		space = new Space();
+		space.setSnapRadius(SNAP_PIXELS / cam.getPPU());
 		frame = new JFrame(); //Creates a window
 		frame.setResizable(false); //Now window cannot be resized by moving its borders
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -75,7 +106,7 @@ public class Main extends Canvas implements MouseListener, MouseMotionListener,
 		//Adds 'this' object to the frame. 'this' refers to the object that is executing this function, that is, the 'game' object we declared above in main(). 
 		frame.add(this); //Basically, it's adding the 'game' object (Which is just a canvas) to the window, so anything we draw on the canvas will now be visible on the frame
 		
-		menu = new Menu();
+		menu = new Menu(space);
 		//menu.setLayout(new BoxLayout(menu, BoxLayout.Y_AXIS));
 		
 		menu.setPreferredSize(new Dimension(WIDTH / 3, HEIGHT));
@@ -92,32 +123,132 @@ public class Main extends Canvas implements MouseListener, MouseMotionListener,
 		
 		frame.setVisible(true); //Makes our frame visible
 		
+		this.createBufferStrategy(2); //Two buffers, one being shown on screen and one being drawn on. Has to be done after the frame is visible
+		
 		this.requestFocusInWindow(); //We need to do this otherwise the canvas isn't able to listen to key events without us having to click on the canvas to give it focus first
+		
+		frameTimer = new Timer(1000 / getFrameRate(), new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				frame();
+			}
+		});
+		frameTimer.start();
+	}
+	
+	//Frames per second to draw at. Can be set with -Dstline.fps=n, otherwise it's the refresh rate of the screen, or 60 if that is not known
+	private int getFrameRate()
+	{
+		int fps = Integer.getInteger("stline.fps", 0);
+		if (fps <= 0)
+			fps = frame.getGraphicsConfiguration().getDevice().getDisplayMode().getRefreshRate();
+		if (fps == DisplayMode.REFRESH_RATE_UNKNOWN)
+			fps = 60;
+		return Math.max(1, Math.min(fps, 1000));
+	}
+	
+	//Called by frameTimer on the event dispatch thread, same as the input listeners, so none of this needs any locking
+	//The event dispatch thread owns the space, so changes other threads submitted to it (Eg. lines being imported) are carried out here as well, all at once
+	private void frame()
+	{
+		if (space.applyPending())
+		{
+			refreshMenu();
+			requestRender();
+		}
+		applyInput();
+		if (dirty)
+		{
+			dirty = false;
+			render();
+		}
+		else
+			inputWhen = 0; //The input didn't change anything on screen, so there's no latency to measure
+	}
+	
+	//Makes the next tick of frameTimer draw a frame
+	private void requestRender()
+	{
+		dirty = true;
 	}
 	
 	//We need to do this because when repaint() is called, the original update() method of Canvas class clears the screen before calling paint()
-	//We never want to clear the screen. Explanation as to why given in paint() method
+	//We never want to clear the screen. Explanation as to why given in render() method
 	@Override
 	public void update(Graphics g)
 	{
 		paint(g);
 	}
 	
+	//paint() is now only called by AWT itself (Eg. when the window is uncovered), we just draw a new frame on the next tick when it happens
 	@Override
 	public void paint(Graphics g)
 	{
-		/* Instead of drawing on the main screen directly, we first draw on a new BufferedImage we create
+		requestRender();
+	}
+	
+	public void render()
+	{
+		long start = System.nanoTime();
+		
+		/* Instead of drawing on the main screen directly, we first draw on a back buffer
 		 * This is because if we clear the previous screen and directly draw on it, we will see flickering of the screen.
 		 * For eg, let's say we were drawing a moving circle on the screen
 		 * If we clear the screen to white and then draw the circle directly, the user will be able to temporarily see the cleared screen before circle is drawn on it
 		 * This causes flickering of the objects on our screen.
-		 * However, if we first draw the circle on another image, and then just copy that image over to the main screen, the user will never see a cleared screen.
-		 * This is what we're doing below.
+		 * However, if we first draw the circle on another image, and then just flip that image onto the main screen, the user will never see a cleared screen.
+		 * The BufferStrategy keeps the same (accelerated) back buffer around between frames, so nothing is allocated per frame
 		 */
-		BufferedImage bufferImg = new BufferedImage(RENDER_WIDTH, RENDER_HEIGHT, BufferedImage.TYPE_INT_ARGB);
-		Graphics2D bg = (Graphics2D) bufferImg.getGraphics();
+		BufferStrategy bs = this.getBufferStrategy();
+		if (bs == null)
+		{
+			//Can only be made once the canvas is displayable, that is, after the frame has been made visible
+			if (!this.isDisplayable())
+				return;
+			this.createBufferStrategy(2);
+			bs = this.getBufferStrategy();
+		}
+		
+		//The contents of the back buffer can be lost (Eg. if the display mode changes), in which case the frame has to be drawn again
+		do
+		{
+			do
+			{
+				Graphics2D bg = (Graphics2D) bs.getDrawGraphics();
+				try
+				{
+					AffineTransform screen = bg.getTransform();
+					draw(bg);
+					if (showStats)
+					{
+						bg.setTransform(screen);
+						RenderStats.renderOverlay(bg);
+					}
+				}
+				finally
+				{
+					bg.dispose();
+				}
+			}
+			while (bs.contentsRestored());
+			bs.show();
+		}
+		while (bs.contentsLost());
 		
-		//Make the coordinate system match cartesian coordinate system
+		RenderStats.FRAME.record(System.nanoTime() - start);
+		if (inputWhen != 0) //MouseEvent times are in milliseconds since the epoch
+		{
+			RenderStats.LATENCY.record((System.currentTimeMillis() - inputWhen) * 1000000);
+			inputWhen = 0;
+		}
+	}
+	
+	private void draw(Graphics2D bg)
+	{
+		//Make the coordinate system match cartesian coordinate system, and scale the render resolution up to the size of the canvas
+		bg.scale((double) WIDTH / RENDER_WIDTH, (double) HEIGHT / RENDER_HEIGHT);
 		bg.translate(RENDER_WIDTH / 2, RENDER_HEIGHT / 2);
 		bg.scale(1.0, -1.0);
 		
@@ -128,35 +259,46 @@ public class Main extends Canvas implements MouseListener, MouseMotionListener,
 		bg.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON); //Turn anti-aliasing on
 		bg.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE); //Just makes the graphics more accurate
 		
+		long start = System.nanoTime();
 		cam.renderGrid(bg);
+		long gridEnd = System.nanoTime();
 		cam.render(space, bg);
+		RenderStats.GRID.record(gridEnd - start);
+		RenderStats.RENDER.record(System.nanoTime() - gridEnd);
 		
-		if (snap != null)
-			cam.renderSnap(snap, bg);
+		//The component being drawn isn't in the space yet, so it is drawn on top separately
+		if (comp != null && !comp.isInvalid())
+		{
+			cam.translate(bg);
+			comp.render(bg, cam);
+			cam.reset(bg);
+		}
 		
-		//Draws bufferImg on our original canvas
-		g.drawImage(bufferImg, 0, 0, WIDTH, HEIGHT, null);
+		if (snapped)
+			cam.renderSnap(snapX, snapY, bg);
 	}
 	
 	@Override
 	public void mouseClicked(MouseEvent e)
 	{
-		
+	
 	}
 	
 	@Override
 	public void mousePressed(MouseEvent e)
 	{
+		applyInput(); //So prevMouseE is the latest position before the button went down
+		input(e);
 		if (e.getButton() == MouseEvent.BUTTON1)
 		{
-			comp = new Line();
+			comp = newComponent();
 			//If user has not pressed shift key to override the snap, snap to required point
-			if (!keys[KeyEvent.VK_SHIFT])
-				comp.startAt(space.snapFrom(cam.getAbsoluteLocation(getPixelRelativeTo(e))));
+			double x = cam.getAbsoluteX(getPixelX(e.getX())), y = cam.getAbsoluteY(getPixelY(e.getY()));
+			if (!keys[KeyEvent.VK_SHIFT] && space.snapFrom(x, y, snapPoint))
+				comp.startAt(new Vector2i(snapPoint[0], snapPoint[1]));
 			else
-				comp.startAt(cam.getAbsoluteLocation(getPixelRelativeTo(e)));
+				comp.startAt(new Vector2i(x, y));
 			action = ACTION.DRAWING;
-			space.push(comp);
 		}
 		else if (e.getButton() == MouseEvent.BUTTON3 || e.getButton() == MouseEvent.BUTTON2)
 		{
@@ -165,19 +307,35 @@ public class Main extends Canvas implements MouseListener, MouseMotionListener,
 		prevMouseE = e;
 	}
 	
+	private Component newComponent()
+	{
+		switch (tool)
+		{
+			case SEGMENT:
+				return new Segment();
+			case RAY:
+				return new Ray();
+			default:
+				return new Line();
+		}
+	}
+	
 	@Override
 	public void mouseReleased(MouseEvent e)
 	{
+		pendingMouseE = e;
+		applyInput(); //So the component ends where the mouse was released, even if the last drags haven't been applied yet
+		input(e);
 		if (action == ACTION.DRAWING)
 		{
-			if (comp.isInvalid()) //If component that user has drawn is not valid (Eg. if line's start pos and end pos is same), remove that element
-				space.pop();
-			else
+			//The component only goes into the space once it is finished, so that its endpoints get indexed for snapping. Invalid ones (Eg. if line's start pos and end pos is same) are just dropped
+			if (!comp.isInvalid())
 			{
-				menu.add(comp);
-				menu.revalidate();
+				space.push(comp);
+				menu.refresh();
 			}
 			comp = null;
+			requestRender();
 		}
 		action = ACTION.IDLE;
 		prevMouseE = e;
@@ -186,134 +344,272 @@ public class Main extends Canvas implements MouseListener, MouseMotionListener,
 	@Override
 	public void mouseEntered(MouseEvent e)
 	{
-		
+	
 	}
 	
 	@Override
 	public void mouseExited(MouseEvent e)
 	{
-		
+	
 	}
 	
 	@Override
 	public void mouseDragged(MouseEvent e)
 	{
-		switch (action)
+		input(e);
+		pendingMouseE = e;
+	}
+	
+	@Override
+	public void mouseMoved(MouseEvent e)
+	{
+		input(e);
+		pendingMouseE = e;
+	}
+	
+	//Applies the mouse moves, drags and wheel turns that came in since this was last called, using only the latest mouse position
+	private void applyInput()
+	{
+		if (pendingMouseE != null)
 		{
-			case DRAWING:
-				//If user has not pressed shift key to override the snap, snap to required point
-				if (!keys[KeyEvent.VK_SHIFT])
-					comp.endAt(space.snapFrom(cam.getAbsoluteLocation(getPixelRelativeTo(e))));
-				else
-					comp.endAt(cam.getAbsoluteLocation(getPixelRelativeTo(e)));
-				break;
+			MouseEvent e = pendingMouseE;
+			pendingMouseE = null;
 			
-			case MOVING:
+			if (action == ACTION.MOVING)
+			{
 				//Get difference between the prevMouse coordinates and current mouse coords, in space, and then move camera's position by that difference.
 				//This makes it so that the mouse pointer remains at the same location in space, while the camera's position changes.
-				Vector2i prev = cam.getAbsoluteLocation(getPixelRelativeTo(prevMouseE));
-				Vector2i next = cam.getAbsoluteLocation(getPixelRelativeTo(e));
-				cam.setPos(cam.getPos().subtract(next.subtract(prev)));
-				break;
+				//Panning is linear, so moving by the whole difference at once is the same as moving by every drag in between
+				double dx = cam.getAbsoluteX(getPixelX(e.getX())) - cam.getAbsoluteX(getPixelX(prevMouseE.getX()));
+				double dy = cam.getAbsoluteY(getPixelY(e.getY())) - cam.getAbsoluteY(getPixelY(prevMouseE.getY()));
+				cam.setPos(cam.getX() - dx, cam.getY() - dy);
+				requestRender();
+			}
+			
+			updateSnap(e);
+			if (action == ACTION.DRAWING)
+			{
+				//If user has not pressed shift key to override the snap, snap to required point
+				comp.endAt(snapped ? new Vector2i(snapX, snapY) : new Vector2i(mouseX, mouseY));
+				requestRender();
+			}
+			
+			prevMouseE = e;
 		}
 		
-		updateSnap(e);
-		
-		prevMouseE = e;
-		repaint();
+		if (pendingWheelRotation != 0)
+		{
+			MouseWheelEvent e = pendingWheelE;
+			double origX = cam.getAbsoluteX(getPixelX(e.getX())), origY = cam.getAbsoluteY(getPixelY(e.getY()));
+			for (; pendingWheelRotation < 0; pendingWheelRotation++)
+				cam.zoomIn();
+			for (; pendingWheelRotation > 0; pendingWheelRotation--)
+				cam.zoomOut();
+			cam.calibrate(RENDER_WIDTH, RENDER_HEIGHT, cam.getPPU());
+			space.setSnapRadius(SNAP_PIXELS / cam.getPPU());
+			
+			//We want the location of the coordinate the mouse was pointing to in space, to remain at the same location on screen even after zoom, to provide a good zooming exp for the user
+			double newX = cam.getAbsoluteX(getPixelX(e.getX())), newY = cam.getAbsoluteY(getPixelY(e.getY()));
+			cam.setPos(cam.getX() + origX - newX, cam.getY() + origY - newY);
+			
+			pendingWheelE = null;
+			requestRender();
+		}
 	}
 	
-	@Override
-	public void mouseMoved(MouseEvent e)
+	//Remembers when the oldest input not yet shown on screen happened, for the latency stats
+	private void input(MouseEvent e)
 	{
-		updateSnap(e);
-		prevMouseE = e;
+		if (inputWhen == 0)
+			inputWhen = e.getWhen();
 	}
 	
+	//Finds where the mouse at e is in space and looks up the point it would snap to
 	private void updateSnap(MouseEvent e)
 	{
-		Vector2i point = cam.getAbsoluteLocation(getPixelRelativeTo(e));
-		Vector2i snap = space.snapFrom(point);
-		if (!snap.equals(point) && !keys[KeyEvent.VK_SHIFT])
-			this.snap = snap;
-		else
-			this.snap = null;
+		mouseX = cam.getAbsoluteX(getPixelX(e.getX()));
+		mouseY = cam.getAbsoluteY(getPixelY(e.getY()));
+		long start = System.nanoTime();
+		space.snapFrom(mouseX, mouseY, snapPoint);
+		RenderStats.SNAP.record(System.nanoTime() - start);
+		boolean snapped = (snapPoint[0] != mouseX || snapPoint[1] != mouseY) && !keys[KeyEvent.VK_SHIFT];
 		
-		if (change(this.snap, prevSnap))
-			repaint();
+		//If the snap is different from before, a new frame has to be drawn
+		if (snapped != this.snapped || (snapped && (snapPoint[0] != snapX || snapPoint[1] != snapY)))
+			requestRender();
 		
-		prevSnap = this.snap;
-	}
-	
-	private boolean change(Vector2i snap, Vector2i prevSnap)
-	{
-		//Basically, if snap is different from prevSnap, repaint() the screen. We need to check all these null values because it gives an error otherwise
-		if ((snap == null && prevSnap != null) || (snap != null && prevSnap == null))
-			return true;
-		else if (snap == null && prevSnap == null)
-			return false;
-		else if (!snap.equals(prevSnap))
-			return true;
-		return false;
+		this.snapped = snapped;
+		snapX = snapPoint[0];
+		snapY = snapPoint[1];
 	}
 	
 	@Override
 	public void mouseWheelMoved(MouseWheelEvent e)
 	{
-		Vector2i origPos = cam.getAbsoluteLocation(getPixelRelativeTo(e));
-		if (e.getWheelRotation() < 0)
-			cam.zoomIn();
-		else
-			cam.zoomOut();
-		cam.calibrate(RENDER_WIDTH, RENDER_HEIGHT, cam.getPPU());
-		
-		//We want the location of the coordinate the mouse was pointing to in space, to remain at the same location on screen even after zoom, to provide a good zooming exp for the user
-		Vector2i newPos = cam.getAbsoluteLocation(getPixelRelativeTo(e));
-		cam.setPos(cam.getPos().add(origPos.subtract(newPos)));
-		
-		repaint();
+		input(e);
+		//Turns are added up and all zoomed by at once, around wherever the mouse was at the last one
+		pendingWheelE = e;
+		pendingWheelRotation += e.getWheelRotation() < 0 ? -1 : 1;
 	}
 	
 	@Override
 	public void keyTyped(KeyEvent e)
 	{
-		
+	
 	}
 	
 	@Override
 	public void keyPressed(KeyEvent e)
 	{
 		keys[e.getKeyCode()] = true;
-		if (e.getKeyCode() == KeyEvent.VK_SHIFT)
+		if (e.getKeyCode() == KeyEvent.VK_SHIFT && prevMouseE != null)
 			updateSnap(prevMouseE);
 		if(e.getKeyCode() == KeyEvent.VK_ESCAPE)
+		{
+			frameTimer.stop(); //Otherwise its events keep the event dispatch thread, and so the whole program, running
 			frame.dispose();
+		}
+		if (e.getKeyCode() == KeyEvent.VK_F3)
+		{
+			showStats = !showStats;
+			requestRender();
+		}
+		if (e.getKeyCode() == KeyEvent.VK_F4)
+			analyze();
+		if (e.isControlDown()) //Ctrl+S saves the scene, Ctrl+O opens one, Ctrl+I imports lines from a text file, Ctrl+Z and Ctrl+Y undo and redo
+		{
+			if (e.getKeyCode() == KeyEvent.VK_Z || e.getKeyCode() == KeyEvent.VK_Y)
+			{
+				if (e.getKeyCode() == KeyEvent.VK_Z && !e.isShiftDown())
+					space.undo();
+				else
+					space.redo();
+				refreshMenu();
+				requestRender();
+			}
+			else if (e.getKeyCode() == KeyEvent.VK_S)
+				save();
+			else if (e.getKeyCode() == KeyEvent.VK_O)
+				open();
+			else if (e.getKeyCode() == KeyEvent.VK_I)
+				importLines();
+			return;
+		}
+		if (e.getKeyCode() == KeyEvent.VK_L)
+			tool = TOOL.LINE;
+		else if (e.getKeyCode() == KeyEvent.VK_S)
+			tool = TOOL.SEGMENT;
+		else if (e.getKeyCode() == KeyEvent.VK_R)
+			tool = TOOL.RAY;
 	}
 	
-	@Override
-	public void keyReleased(KeyEvent e)
+	private void save()
 	{
-		keys[e.getKeyCode()] = false;
+		JFileChooser chooser = new JFileChooser();
+		if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION)
+			return;
+		try
+		{
+			SceneFile.save(space, chooser.getSelectedFile());
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			JOptionPane.showMessageDialog(frame, e.getMessage(), "Could not save scene", JOptionPane.ERROR_MESSAGE);
+		}
 	}
 	
-	//Returns Vector2i of coords of pixel relative to centre of screen, IN CARTESIAN COORDS
-	private Vector2i getPixelRelativeTo(int x, int y)
+	private void open()
 	{
-		Vector2i pixel = getPixelInOrigScreen(x, y);
-		return new Vector2i(pixel.x - RENDER_WIDTH / 2, RENDER_HEIGHT / 2 - pixel.y);
+		JFileChooser chooser = new JFileChooser();
+		if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION)
+			return;
+		try
+		{
+			space.replace(SceneFile.load(chooser.getSelectedFile())); //Can be undone like any other change
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			JOptionPane.showMessageDialog(frame, e.getMessage(), "Could not open scene", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+		
+		refreshMenu();
+		requestRender();
+	}
+	
+	//Imports lines from a CSV file on a background thread. The lines show up batch by batch while the import is running, as frame() carries out the batches it submits
+	private void importLines()
+	{
+		JFileChooser chooser = new JFileChooser();
+		if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION)
+			return;
+		new LineImporter(chooser.getSelectedFile(), space, new Line().col, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				refreshMenu();
+				requestRender();
+			}
+		}).execute();
+	}
+	
+	//Works out parallel, perpendicular and coincident lines and the spread of slopes and intercepts on a background thread, and shows them in a dialog
+	//It goes through a snapshot, so lines can still be drawn while it's running
+	private void analyze()
+	{
+		final LineStore lines = space.snapshot();
+		new SwingWorker<SceneAnalytics, Void>()
+		{
+			@Override
+			protected SceneAnalytics doInBackground()
+			{
+				return SceneAnalytics.analyze(lines);
+			}
+			
+			@Override
+			protected void done()
+			{
+				try
+				{
+					JTextArea report = new JTextArea(get().getReport(), 30, 90);
+					report.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+					report.setEditable(false);
+					JOptionPane.showMessageDialog(frame, new JScrollPane(report), "Scene analytics", JOptionPane.PLAIN_MESSAGE);
+				}
+				catch (Exception e)
+				{
+					e.printStackTrace();
+				}
+			}
+		}.execute();
 	}
 	
-	//Returns Vector2i of coords of pixel relative to centre of screen, IN CARTESIAN COORDS, if you pass the MouseEvent that generated the click on that pixel
-	private Vector2i getPixelRelativeTo(MouseEvent e)
+	//Makes the menu show the details of every line in the space
+	private void refreshMenu()
 	{
-		return getPixelRelativeTo(e.getX(), e.getY());
+		menu.refresh();
 	}
 	
-	//Returns Vector2i of the coords that the pixel would be at, if screen resolution was RENDER_WIDTH x RENDER_HEIGHT
-	//Basically finds the ratio of x and y coords [Eg if WIDTH = 1000 and x = 500, then we just return RENDER_WIDTH*0.5]
-	private Vector2i getPixelInOrigScreen(int x, int y)
+	@Override
+	public void keyReleased(KeyEvent e)
 	{
-		return new Vector2i((double) x / WIDTH * RENDER_WIDTH, (double) y / HEIGHT * RENDER_HEIGHT);
+		keys[e.getKeyCode()] = false;
+	}
+	
+	//Returns x coord of pixel relative to centre of screen, IN CARTESIAN COORDS, if you pass the x coord of the mouse on the canvas
+	//The pixel is first scaled to where it would be if screen resolution was RENDER_WIDTH x RENDER_HEIGHT [Eg if WIDTH = 1000 and x = 500, then it's at RENDER_WIDTH*0.5]
+	private double getPixelX(int x)
+	{
+		return (double) x / WIDTH * RENDER_WIDTH - RENDER_WIDTH / 2;
+	}
+	
+	//Same as getPixelX(), for the y coord. Cartesian y goes up, so it's flipped
+	private double getPixelY(int y)
+	{
+		return RENDER_HEIGHT / 2 - (double) y / HEIGHT * RENDER_HEIGHT;
 	}
 }
 
@@ -321,3 +617,8 @@ enum ACTION
 {
 	IDLE, DRAWING, MOVING;
 }
+
+enum TOOL
+{
+	LINE, SEGMENT, RAY;
+}
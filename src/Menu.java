@@ -1,39 +1,121 @@
-import java.awt.BorderLayout;
+import java.awt.Color;
 import java.awt.Dimension;
-import java.util.ArrayList;
-import java.util.List;
+import java.awt.Font;
 
+import javax.swing.AbstractListModel;
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.ListCellRenderer;
 
+//Side bar that shows the details of every line in the space
+//It's a JList over the LineStore, so only the rows that are on screen ever get drawn, and they are all drawn with the same renderer panel
 public class Menu extends JScrollPane
 {
-	private List<Component> comps;
-	private JPanel view;
+	private static final long serialVersionUID = 1L;
 	
-	public Menu()
+	private static final int ROW_HEIGHT = 300;
+	
+	private Space space;
+	private LinesModel model = new LinesModel();
+	private JList<Integer> list;
+	
+	public Menu(Space space)
 	{
 		super();
-		comps = new ArrayList<Component>();
-		view = new JPanel(new VerticalFlowLayout(VerticalFlowLayout.CENTER, VerticalFlowLayout.TOP));
-		this.setViewportView(view);
+		this.space = space;
+		list = new JList<Integer>(model);
+		list.setCellRenderer(new DetailsRenderer());
+		list.setFixedCellHeight(ROW_HEIGHT); //With a fixed size, the JList doesn't have to ask the renderer for the size of every row
+		list.setFixedCellWidth(1);
+		this.setViewportView(list);
 	}
 	
-	//public Menu(LayoutManager layout)
-	//{
-	//super(layout);
-	//}
+	//Updates the list after lines have been added to or removed from the space
+	public void refresh()
+	{
+		model.update(space.getLines().size(), space.getGeneration());
+	}
 	
-	public void add(Component comp)
+	//Model of the list. Element i is just the index of line i in the LineStore
+	private class LinesModel extends AbstractListModel<Integer>
 	{
-		comps.add(comp);
-		JPanel details = comp.getDetails();
-		details.setPreferredSize(new Dimension(this.getPreferredSize().width-30, 300));
-		view.add(details, BorderLayout.SOUTH);
+		private static final long serialVersionUID = 1L;
+		
+		private int size;
+		private long generation;
+		
+		void update(int newSize, long newGeneration)
+		{
+			int oldSize = size;
+			size = newSize;
+			if (newGeneration != generation) //Lines were removed or replaced, so any row could have changed
+			{
+				generation = newGeneration;
+				if (oldSize > newSize)
+					fireIntervalRemoved(this, newSize, oldSize - 1);
+				fireContentsChanged(this, 0, Math.max(0, newSize - 1));
+				if (newSize > oldSize)
+					fireIntervalAdded(this, oldSize, newSize - 1);
+			}
+			else if (newSize > oldSize)
+				fireIntervalAdded(this, oldSize, newSize - 1);
+		}
+		
+		@Override
+		public int getSize()
+		{
+			return size;
+		}
+		
+		@Override
+		public Integer getElementAt(int index)
+		{
+			return index;
+		}
 	}
 	
-	public void remove(Component comp)
+	//Panel that draws the details of a line. The same one is filled in with the details of each row as the JList draws it
+	private class DetailsRenderer extends JPanel implements ListCellRenderer<Integer>
 	{
-		comps.remove(comp);
+		private static final long serialVersionUID = 1L;
+		
+		private JLabel slope = new JLabel(), startPoint = new JLabel(), endPoint = new JLabel();
+		
+		DetailsRenderer()
+		{
+			super(new VerticalFlowLayout(VerticalFlowLayout.CENTER, VerticalFlowLayout.TOP, 20, 20));
+			this.setBorder(BorderFactory.createLineBorder(Color.BLACK));
+			slope.setFont(new Font("Serif", Font.BOLD, 16));
+			startPoint.setFont(new Font("Calibri", Font.BOLD | Font.ITALIC, 14));
+			endPoint.setFont(new Font("Calibri", Font.BOLD | Font.ITALIC, 14));
+			this.add(slope);
+			this.add(startPoint);
+			this.add(endPoint);
+		}
+		
+		@Override
+		public java.awt.Component getListCellRendererComponent(JList<? extends Integer> list, Integer value, int index, boolean isSelected, boolean cellHasFocus)
+		{
+			LineStore lines = space.getLines();
+			int i = value;
+			Color color = Palette.getColor(lines.col(i));
+			slope.setText("SLOPE = " + (float) (lines.y2(i) - lines.y1(i)) / (lines.x2(i) - lines.x1(i)));
+			startPoint.setText("(x1,y1)=" + "(" + lines.x1(i) + "," + lines.y1(i) + ")");
+			endPoint.setText("(x2,y2)=" + "(" + lines.x2(i) + "," + lines.y2(i) + ")");
+			slope.setForeground(color);
+			startPoint.setForeground(color);
+			endPoint.setForeground(color);
+			this.setBackground(isSelected ? list.getSelectionBackground() : list.getBackground());
+			return this;
+		}
+		
+		@Override
+		public Dimension getPreferredSize()
+		{
+			return new Dimension(list.getWidth(), ROW_HEIGHT);
+		}
 	}
 }
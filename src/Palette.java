@@ -0,0 +1,47 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/* Shared Color and Stroke objects, so drawing code doesn't have to make a new one every time it needs one
+ * Each is kept in a fixed size table at a slot picked by hashing its key, and a different key landing on the same slot just replaces it,
+ * so a scene with a different color for every line can't make the tables grow, and a lookup doesn't box its key like a map would
+ */
+public class Palette
+{
+	private static final int COLORS = 1024, STROKES = 16; //Sizes of the tables, powers of 2
+	
+	private static final AtomicReferenceArray<Color> colors = new AtomicReferenceArray<Color>(COLORS); //Drawn from several threads at once
+	private static final AtomicReferenceArray<BasicStroke> strokes = new AtomicReferenceArray<BasicStroke>(STROKES);
+	
+	//Returns the color for an ARGB int (Eg. 0xFFFF0000 for opaque red)
+	public static Color getColor(int col)
+	{
+		int slot = slot(col, COLORS);
+		Color color = colors.get(slot);
+		if (color == null || color.getRGB() != col)
+		{
+			color = new Color((col >> 16) & 0xFF, (col >> 8) & 0xFF, (col) & 0xFF, (col >> 24) & 0xFF);
+			colors.set(slot, color);
+		}
+		return color;
+	}
+	
+	public static BasicStroke getStroke(float width)
+	{
+		int slot = slot(Float.floatToIntBits(width), STROKES);
+		BasicStroke stroke = strokes.get(slot);
+		if (stroke == null || Float.floatToIntBits(stroke.getLineWidth()) != Float.floatToIntBits(width))
+		{
+			stroke = new BasicStroke(width);
+			strokes.set(slot, stroke);
+		}
+		return stroke;
+	}
+	
+	//Spreads the bits of key over the slots, so that colors which only differ in a few bits (Eg. the alpha of the grid fading in) don't all land on the same one
+	private static int slot(int key, int slots)
+	{
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & (slots - 1);
+	}
+}
@@ -0,0 +1,166 @@
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/* Writes a PNG one row at a time, so an image far too big to keep in memory can be written while it's being drawn
+ * The image is 8 bit RGB (Alpha is dropped). Every row is filtered with the Sub filter (Each byte minus the one 3 bytes before it),
+ * which turns the long runs of the same color a drawing is mostly made of into runs of zeroes, then everything goes through one Deflater into IDAT chunks of up to CHUNK_SIZE bytes
+ */
+public class PngWriter implements Closeable
+{
+	private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+	private static final int CHUNK_SIZE = 1 << 16;
+	private static final byte FILTER_SUB = 1;
+	
+	private DataOutputStream out;
+	private Deflater deflater;
+	private DeflaterOutputStream idat;
+	private int width, height, rows;
+	private byte[] row;
+	
+	public PngWriter(OutputStream out, int width, int height) throws IOException
+	{
+		//The PngWriter owns out, so if it can't be made out gets closed, as nobody will get a PngWriter to close
+		try
+		{
+			if (width <= 0 || height <= 0)
+				throw new IllegalArgumentException("Image must be at least 1x1, not " + width + "x" + height);
+			this.out = new DataOutputStream(out);
+			this.width = width;
+			this.height = height;
+			row = new byte[1 + 3 * width];
+			
+			this.out.write(SIGNATURE);
+			byte[] header = new byte[13];
+			putInt(header, 0, width);
+			putInt(header, 4, height);
+			header[8] = 8; //Bit depth
+			header[9] = 2; //Color type: RGB
+			//Compression, filter and interlace methods are all 0
+			writeChunk("IHDR", header, header.length);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			out.close();
+			throw e;
+		}
+		
+		deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		idat = new DeflaterOutputStream(new ChunkStream(), deflater, CHUNK_SIZE);
+	}
+	
+	//Writes the next row of the image, from pixels[offset] to pixels[offset + width - 1] (ARGB, like BufferedImage.getRGB() gives)
+	public void writeRow(int[] pixels, int offset) throws IOException
+	{
+		if (rows == height)
+			throw new IllegalStateException("All " + height + " rows have already been written");
+		row[0] = FILTER_SUB;
+		int prevR = 0, prevG = 0, prevB = 0;
+		for (int x = 0, i = 1; x < width; x++)
+		{
+			int argb = pixels[offset + x];
+			int r = argb >>> 16 & 0xFF, g = argb >>> 8 & 0xFF, b = argb & 0xFF;
+			row[i++] = (byte) (r - prevR);
+			row[i++] = (byte) (g - prevG);
+			row[i++] = (byte) (b - prevB);
+			prevR = r;
+			prevG = g;
+			prevB = b;
+		}
+		idat.write(row);
+		rows++;
+	}
+	
+	//Finishes the image data and writes the end of the file. Every row must have been written, otherwise it throws (After closing out all the same)
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			if (rows != height)
+				throw new IOException("Only " + rows + " of " + height + " rows were written");
+			idat.close(); //Flushes the last IDAT chunk
+			writeChunk("IEND", new byte[0], 0);
+		}
+		finally
+		{
+			try
+			{
+				out.close();
+			}
+			finally
+			{
+				deflater.end();
+			}
+		}
+	}
+	
+	private void writeChunk(String type, byte[] data, int length) throws IOException
+	{
+		byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32(); //Covers the type and the data, not the length
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+		out.writeInt(length);
+		out.write(typeBytes);
+		out.write(data, 0, length);
+		out.writeInt((int) crc.getValue());
+	}
+	
+	private static void putInt(byte[] bytes, int offset, int value)
+	{
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+	
+	//Collects the compressed data and writes it out as IDAT chunks of CHUNK_SIZE bytes
+	private class ChunkStream extends OutputStream
+	{
+		private byte[] chunk = new byte[CHUNK_SIZE];
+		private int size;
+		
+		@Override
+		public void write(int b) throws IOException
+		{
+			if (size == CHUNK_SIZE)
+				flushChunk();
+			chunk[size++] = (byte) b;
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			while (len > 0)
+			{
+				if (size == CHUNK_SIZE)
+					flushChunk();
+				int n = Math.min(len, CHUNK_SIZE - size);
+				System.arraycopy(b, off, chunk, size, n);
+				size += n;
+				off += n;
+				len -= n;
+			}
+		}
+		
+		//Leaves the underlying stream open, PngWriter still has to write IEND to it
+		@Override
+		public void close() throws IOException
+		{
+			if (size > 0)
+				flushChunk();
+		}
+		
+		private void flushChunk() throws IOException
+		{
+			writeChunk("IDAT", chunk, size);
+			size = 0;
+		}
+	}
+}
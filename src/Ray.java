@@ -0,0 +1,9 @@
+//Part of a line that starts at the start point and goes on forever through the end point
+public class Ray extends Line
+{
+	@Override
+	public byte getKind()
+	{
+		return LineStore.RAY;
+	}
+}
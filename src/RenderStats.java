@@ -0,0 +1,125 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+//Timings of the stages of drawing a frame, and of the time from a mouse event to the frame that shows it
+//Code being timed takes System.nanoTime() before and after, and records the difference in the stage's Histogram
+public class RenderStats implements RenderStatsMXBean
+{
+	public static final Histogram FRAME = new Histogram(); //All of Main.render()
+	public static final Histogram GRID = new Histogram(); //Camera.renderGrid()
+	public static final Histogram RENDER = new Histogram(); //Camera.render()
+	public static final Histogram SNAP = new Histogram(); //Space.snapFrom()
+	public static final Histogram LATENCY = new Histogram(); //From the time of a MouseEvent to the frame that shows it being put on screen
+	
+	private static final Font overlayFont = new Font("Consolas", Font.PLAIN, 12);
+	private static final Color overlayBack = new Color(0, 0, 0, 160);
+	
+	//Makes the stats available over JMX
+	public static void register()
+	{
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new RenderStats(), new ObjectName("StLine:type=RenderStats"));
+		}
+		catch (JMException e)
+		{
+			e.printStackTrace();
+		}
+	}
+	
+	//Draws a box with the stats in the top-left corner. bg should have the normal screen coordinate system (y going down)
+	public static void renderOverlay(Graphics2D bg)
+	{
+		String[] lines = {
+				"frame   p50 " + millis(FRAME.percentile(0.5)) + "  p99 " + millis(FRAME.percentile(0.99)) + "  max " + millis(FRAME.getMax()),
+				"latency p50 " + millis(LATENCY.percentile(0.5)) + "  p99 " + millis(LATENCY.percentile(0.99)) + "  max " + millis(LATENCY.getMax()),
+				"grid " + millis(GRID.percentile(0.99)) + "  render " + millis(RENDER.percentile(0.99)) + "  snap " + millis(SNAP.percentile(0.99)) + "  (p99)"
+		};
+		bg.setFont(overlayFont);
+		bg.setColor(overlayBack);
+		bg.fillRect(5, 5, 330, 16 * lines.length + 8);
+		bg.setColor(Color.WHITE);
+		for (int i = 0; i < lines.length; i++)
+			bg.drawString(lines[i], 10, 22 + 16 * i);
+	}
+	
+	private static String millis(long nanos)
+	{
+		return String.format("%6.2fms", nanos / 1e6);
+	}
+	
+	@Override
+	public double getFrameP50Millis()
+	{
+		return FRAME.percentile(0.5) / 1e6;
+	}
+	
+	@Override
+	public double getFrameP99Millis()
+	{
+		return FRAME.percentile(0.99) / 1e6;
+	}
+	
+	@Override
+	public double getFrameMaxMillis()
+	{
+		return FRAME.getMax() / 1e6;
+	}
+	
+	@Override
+	public long getFrameCount()
+	{
+		return FRAME.getCount();
+	}
+	
+	@Override
+	public double getLatencyP50Millis()
+	{
+		return LATENCY.percentile(0.5) / 1e6;
+	}
+	
+	@Override
+	public double getLatencyP99Millis()
+	{
+		return LATENCY.percentile(0.99) / 1e6;
+	}
+	
+	@Override
+	public double getLatencyMaxMillis()
+	{
+		return LATENCY.getMax() / 1e6;
+	}
+	
+	@Override
+	public double getGridP99Millis()
+	{
+		return GRID.percentile(0.99) / 1e6;
+	}
+	
+	@Override
+	public double getRenderP99Millis()
+	{
+		return RENDER.percentile(0.99) / 1e6;
+	}
+	
+	@Override
+	public double getSnapP99Millis()
+	{
+		return SNAP.percentile(0.99) / 1e6;
+	}
+	
+	@Override
+	public void reset()
+	{
+		FRAME.reset();
+		GRID.reset();
+		RENDER.reset();
+		SNAP.reset();
+		LATENCY.reset();
+	}
+}
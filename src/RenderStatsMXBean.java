@@ -0,0 +1,18 @@
+//What RenderStats shows over JMX (Under the name "StLine:type=RenderStats"). All times are in milliseconds
+public interface RenderStatsMXBean
+{
+	public double getFrameP50Millis();
+	public double getFrameP99Millis();
+	public double getFrameMaxMillis();
+	public long getFrameCount();
+	
+	public double getLatencyP50Millis();
+	public double getLatencyP99Millis();
+	public double getLatencyMaxMillis();
+	
+	public double getGridP99Millis();
+	public double getRenderP99Millis();
+	public double getSnapP99Millis();
+	
+	public void reset();
+}
@@ -0,0 +1,595 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/* Scene wide statistics of the lines of a LineStore: groups of parallel lines, pairs of those groups that are perpendicular to each other,
+ * lines that lie on top of each other, and how slopes and intercepts are spread out
+ *
+ * The angle of every line's normal is worked out in parallel in blocks of BLOCK_SIZE lines on the common ForkJoinPool, and the lines are sorted by it
+ * A group of parallel lines starts at the first line in that order that isn't in one yet, and takes the lines after it whose angles are within tolerance of that first one
+ * Each group of parallel lines is then sorted by c, and split the same way into groups of lines whose c are within tolerance of the first one's, which lie on the same line
+ * Every line is compared with the first of its group rather than with the one before it, so a long run of lines that each turn a little can't chain into one group far wider than the tolerance
+ * The tolerances grow with how far a line's points are from the origin, and how short it is, as a and b (and so c) get less precise then (See tolerate())
+ * Grouping after sorting, rather than rounding to fixed steps, means groups start where the lines are instead of at steps that could fall between two lines a hair apart
+ * The sorts are of longs packing a key and the index of a line, so it's all O(n log n) without a single object per line, and a million lines take under a second
+ *
+ * Only the biggest TOP groups are kept for showing, but the counts cover all of them
+ */
+public class SceneAnalytics
+{
+	public static final int TOP = 10; //Groups kept of each kind
+	public static final int SLOPE_BINS = 180; //One per degree, from -90 to 90
+	public static final int INTERCEPT_BINS = 40;
+	
+	private static final double ANGLE_TOLERANCE = 1e-9; //Lines whose directions are this close (In radians) are parallel, if their points are near the origin
+	private static final double DISTANCE_TOLERANCE = 1e-9; //Parallel lines whose c are this close are the same line, if their points are near the origin
+	private static final double RELATIVE_TOLERANCE = 1e-15; //A few ulps, relative to the largest coordinate of a line's points. See tolerate()
+	private static final int INDEX_BITS = 31;
+	private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+	private static final int BLOCK_SIZE = 1 << 16;
+	
+	private LineStore lines;
+	private int size, vertical;
+	private long nanos;
+	
+	private int directions; //Number of different directions
+	private Group[] parallel = new Group[0]; //Biggest groups of parallel lines
+	private int parallelGroups; //Directions with more than one line
+	
+	private Group[][] perpendicular = new Group[0][]; //Pairs of directions at right angles to each other, with the most pairs of lines first
+	private long perpendicularGroups, perpendicularLines; //Pairs of directions, and pairs of lines
+	
+	private Group[] coincident = new Group[0]; //Biggest groups of lines on the same line
+	private int coincidentGroups;
+	private long duplicates; //Lines on the same line as one before them
+	
+	private int[] slopes = new int[SLOPE_BINS]; //Lines by the angle of their slope, in degrees from -90
+	private int[] intercepts = new int[INTERCEPT_BINS]; //Lines that aren't vertical by y intercept, from interceptLow to interceptHigh
+	private double interceptLow, interceptMedian, interceptHigh; //1st, 50th and 99th percentile of the y intercepts
+	private int interceptsBelow, interceptsAbove; //Intercepts outside of the range of the histogram
+	
+	private long[] angles, offsets; //Angle of the normal and c of every line, as sortable bits (See sortable())
+	private double[] angleTolerances, distanceTolerances; //How far off the angle and c of every line could be just from rounding
+	private int wrapFrom; //Lines from this position of the direction order on are at the start of the half circle of directions, so their angles get PI added to them
+	
+	//Works out everything about the lines. Pass a snapshot (See Space.snapshot()) if the space might be changed meanwhile
+	public static SceneAnalytics analyze(LineStore lines)
+	{
+		SceneAnalytics analytics = new SceneAnalytics(lines);
+		analytics.run();
+		return analytics;
+	}
+	
+	private SceneAnalytics(LineStore lines)
+	{
+		this.lines = lines;
+		size = lines.size();
+		if (size > INDEX_MASK)
+			throw new IllegalArgumentException("Too many lines to analyze: " + size);
+	}
+	
+	private void run()
+	{
+		long start = System.nanoTime();
+		
+		angles = new long[size];
+		offsets = new long[size];
+		angleTolerances = new double[size];
+		distanceTolerances = new double[size];
+		final long[] byDirection = new long[size];
+		final double[] yIntercepts = new double[size];
+		int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		final int[][] blockSlopes = new int[blocks][SLOPE_BINS];
+		final int[] blockVertical = new int[blocks];
+		
+		//Keys, slope and intercept of every line
+		parallelFor(new Block()
+		{
+			@Override
+			public void run(int block, int from, int to)
+			{
+				int[] slopeBins = blockSlopes[block];
+				for (int i = from; i < to; i++)
+				{
+					double a = lines.a(i), b = lines.b(i), c = lines.c(i);
+					
+					//The normal always has a >= 0 (See LineStore), so its angle is in (-90, 90] degrees, which is shifted to (0, 180]. 0 and 180 are the same direction, see findParallel()
+					angles[i] = sortable(Math.atan2(b, a) + Math.PI / 2);
+					offsets[i] = sortable(c);
+					byDirection[i] = (angles[i] & ~INDEX_MASK) | i;
+					tolerate(i);
+					
+					//Slope is -a/b, so the angle of the line is atan(-a/b), and a vertical line (b = 0) is at 90 degrees
+					double angle = b == 0 ? 90 : Math.toDegrees(Math.atan(-a / b));
+					slopeBins[Math.min(SLOPE_BINS - 1, Math.max(0, (int) Math.floor(angle + 90)))]++;
+					if (b == 0)
+					{
+						blockVertical[block]++;
+						yIntercepts[i] = Double.NaN;
+					}
+					else
+						yIntercepts[i] = c / b;
+				}
+			}
+		});
+		for (int k = 0; k < blocks; k++)
+		{
+			vertical += blockVertical[k];
+			for (int bin = 0; bin < SLOPE_BINS; bin++)
+				slopes[bin] += blockSlopes[k][bin];
+		}
+		
+		sort(byDirection, 0, size, angles);
+		long[] sorted = findParallel(byDirection);
+		findCoincident(sorted);
+		findIntercepts(yIntercepts);
+		
+		angles = null;
+		offsets = null;
+		angleTolerances = null;
+		distanceTolerances = null;
+		nanos = System.nanoTime() - start;
+	}
+	
+	/* Splits the lines (Sorted by angle) into groups of parallel ones. Groups whose directions are 90 degrees apart are perpendicular to each other
+	 * Directions go around in a circle (An angle of 0 is the same as 180), so the order is first turned to start after the biggest gap between two angles,
+	 * where no group can be cut in two. Returns the lines in that order, with every group of parallel lines after each other
+	 */
+	private long[] findParallel(long[] sorted)
+	{
+		if (size == 0)
+			return sorted;
+		int cut = 0;
+		double biggest = angle(sorted[0]) + Math.PI - angle(sorted[size - 1]);
+		for (int k = 1; k < size; k++)
+		{
+			double gap = angle(sorted[k]) - angle(sorted[k - 1]);
+			if (gap > biggest)
+			{
+				biggest = gap;
+				cut = k;
+			}
+		}
+		long[] order = new long[size];
+		System.arraycopy(sorted, cut, order, 0, size - cut);
+		System.arraycopy(sorted, 0, order, size - cut, cut);
+		wrapFrom = size - cut;
+		
+		//Start, end, range of angles and tolerance of every group, so that the groups perpendicular to one can be found with a binary search
+		int[] starts = new int[size], ends = new int[size];
+		double[] lows = new double[size], highs = new double[size], tolerances = new double[size];
+		double maxTolerance = 0;
+		int groups = 0;
+		for (int i = 0; i < size; )
+		{
+			int j = groupEnd(order, i);
+			double tolerance = ANGLE_TOLERANCE;
+			for (int k = i; k < j; k++)
+				tolerance = Math.max(tolerance, ANGLE_TOLERANCE + angleTolerances[line(order, k)]);
+			maxTolerance = Math.max(maxTolerance, tolerance);
+			starts[groups] = i;
+			ends[groups] = j;
+			lows[groups] = unwrapped(order, i);
+			highs[groups] = unwrapped(order, j - 1);
+			tolerances[groups++] = tolerance;
+			if (j - i > 1)
+			{
+				parallelGroups++;
+				parallel = keep(parallel, order, i, j);
+			}
+			i = j;
+		}
+		directions = groups;
+		
+		//All angles are within half a circle now, so of two perpendicular groups the second one is always 90 degrees after the first, and every pair is found once
+		//The search is for anything that could be within the biggest tolerance of all, and then each group found is checked against the tolerance of the two groups
+		for (int g = 0; g < groups; g++)
+		{
+			double from = lows[g] + Math.PI / 2 - tolerances[g] - maxTolerance, to = highs[g] + Math.PI / 2 + tolerances[g] + maxTolerance;
+			int lo = g + 1, hi = groups; //First group that ends at or after 'from'
+			while (lo < hi)
+			{
+				int mid = (lo + hi) >>> 1;
+				if (highs[mid] < from)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			for (int p = lo; p < groups && lows[p] <= to; p++)
+			{
+				double tolerance = Math.max(tolerances[g], tolerances[p]);
+				if (highs[p] < lows[g] + Math.PI / 2 - tolerance || lows[p] > highs[g] + Math.PI / 2 + tolerance)
+					continue;
+				long pairs = (long) (ends[g] - starts[g]) * (ends[p] - starts[p]);
+				perpendicularGroups++;
+				perpendicularLines += pairs;
+				
+				//Keeps the TOP pairs with the most pairs of lines, in order
+				if (perpendicular.length == TOP && pairs <= pairsOf(perpendicular[TOP - 1]))
+					continue;
+				perpendicular = Arrays.copyOf(perpendicular, Math.min(perpendicular.length + 1, TOP));
+				int at = perpendicular.length - 1;
+				while (at > 0 && pairsOf(perpendicular[at - 1]) < pairs)
+				{
+					perpendicular[at] = perpendicular[at - 1];
+					at--;
+				}
+				perpendicular[at] = new Group[] {new Group(order, starts[g], ends[g]), new Group(order, starts[p], ends[p])};
+			}
+		}
+		return order;
+	}
+	
+	private static long pairsOf(Group[] pair)
+	{
+		return (long) pair[0].size() * pair[1].size();
+	}
+	
+	//Angle of the normal of the line in a packed long, from 0 to PI
+	private double angle(long packed)
+	{
+		return Double.longBitsToDouble(angles[(int) (packed & INDEX_MASK)]); //Angles are never negative, so their sortable bits are just their bits
+	}
+	
+	//Angle of the line at position k of the order findParallel() makes, going on past PI for the ones that wrapped around
+	private double unwrapped(long[] order, int k)
+	{
+		return k >= wrapFrom ? angle(order[k]) + Math.PI : angle(order[k]);
+	}
+	
+	//End of the group of parallel lines that starts at position i of the order findParallel() makes: the lines after i whose angles are within tolerance of the angle of i
+	//Both angles can be off by their own tolerance, so they can be as far apart as both tolerances together
+	private int groupEnd(long[] order, int i)
+	{
+		int j = i + 1;
+		while (j < size && unwrapped(order, j) - unwrapped(order, i) <= ANGLE_TOLERANCE + angleTolerances[line(order, i)] + angleTolerances[line(order, j)])
+			j++;
+		return j;
+	}
+	
+	//Sorts every group of parallel lines by c, and adds the lines next to each other that are on the same line as a group
+	private void findCoincident(long[] order)
+	{
+		long[] byOffset = new long[size];
+		for (int i = 0; i < size; )
+		{
+			int j = groupEnd(order, i);
+			if (j - i > 1)
+			{
+				for (int k = i; k < j; k++)
+				{
+					int line = (int) (order[k] & INDEX_MASK);
+					byOffset[k] = (offsets[line] & ~INDEX_MASK) | line;
+				}
+				sort(byOffset, i, j, offsets);
+				for (int k = i; k < j; )
+				{
+					int m = k + 1;
+					while (m < j && onSameLine(line(byOffset, k), line(byOffset, m))) //Against the first line of the group, like groupEnd()
+						m++;
+					if (m - k > 1)
+					{
+						coincidentGroups++;
+						duplicates += m - k - 1;
+						coincident = keep(coincident, byOffset, k, m);
+					}
+					k = m;
+				}
+			}
+			i = j;
+		}
+	}
+	
+	//Whether two parallel lines i and j (With c of i at most c of j) are close enough to be the same line, going by both their tolerances like groupEnd()
+	private boolean onSameLine(int i, int j)
+	{
+		return lines.c(j) - lines.c(i) <= DISTANCE_TOLERANCE + distanceTolerances[i] + distanceTolerances[j];
+	}
+	
+	/* Works out how far off the angle and c of line i could be just from rounding. The points are only precise to a few ulps of their largest coordinate,
+	 * which tilts a short line by that much over its length, and a tilted line has its c off by the tilt times how far its points are from the origin
+	 * So a line of length 1 at a million can only tell angles apart to about 1e-9 and c to about 1e-3, and one at 1e9 to 1e-6 and 1e3
+	 */
+	private void tolerate(int i)
+	{
+		double x1 = lines.x1(i), y1 = lines.y1(i), x2 = lines.x2(i), y2 = lines.y2(i);
+		double scale = Math.max(Math.max(Math.abs(x1), Math.abs(y1)), Math.max(Math.abs(x2), Math.abs(y2)));
+		double tilt = RELATIVE_TOLERANCE * scale / Math.hypot(x2 - x1, y2 - y1);
+		angleTolerances[i] = tilt;
+		distanceTolerances[i] = RELATIVE_TOLERANCE * scale + tilt * scale * 2;
+	}
+	
+	private static int line(long[] sorted, int k)
+	{
+		return (int) (sorted[k] & INDEX_MASK);
+	}
+	
+	/* Sorts the lines from 'from' to 'to' of sorted (Each packed as the top bits of its key, then its index) by their whole keys
+	 * A long can't hold a whole key and an index, so they are sorted by the top bits of their keys first, and then every run of lines with the same top bits by the rest of them
+	 */
+	private static void sort(long[] sorted, int from, int to, long[] keys)
+	{
+		Arrays.parallelSort(sorted, from, to);
+		for (int i = from; i < to; )
+		{
+			int j = i + 1;
+			while (j < to && (sorted[j] & ~INDEX_MASK) == (sorted[i] & ~INDEX_MASK))
+				j++;
+			if (j - i > 1)
+			{
+				long[] rest = new long[j - i];
+				for (int k = i; k < j; k++)
+				{
+					int line = line(sorted, k);
+					rest[k - i] = (keys[line] & INDEX_MASK) << 32 | line;
+				}
+				Arrays.sort(rest);
+				for (int k = i; k < j; k++)
+					sorted[k] = (sorted[k] & ~INDEX_MASK) | (rest[k - i] & INDEX_MASK);
+			}
+			i = j;
+		}
+	}
+	
+	//Bits of d as a long that compares the same way d does (Negative doubles have their bits in the reverse order, so those are flipped)
+	private static long sortable(double d)
+	{
+		long bits = Double.doubleToLongBits(d + 0.0); //+ 0.0 turns -0 into 0
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+	}
+	
+	//Histogram of the y intercepts between their 1st and 99th percentile, as a few lines close to vertical can have intercepts far away from all the others
+	private void findIntercepts(double[] yIntercepts)
+	{
+		int n = 0;
+		for (int i = 0; i < size; i++)
+		{
+			if (!Double.isNaN(yIntercepts[i]))
+				yIntercepts[n++] = yIntercepts[i];
+		}
+		if (n == 0)
+			return;
+		Arrays.parallelSort(yIntercepts, 0, n);
+		interceptLow = yIntercepts[(int) (0.01 * (n - 1))];
+		interceptMedian = yIntercepts[(n - 1) / 2];
+		interceptHigh = yIntercepts[(int) (0.99 * (n - 1))];
+		
+		double width = (interceptHigh - interceptLow) / INTERCEPT_BINS;
+		for (int i = 0; i < n; i++)
+		{
+			double y = yIntercepts[i];
+			if (y < interceptLow)
+				interceptsBelow++;
+			else if (y > interceptHigh)
+				interceptsAbove++;
+			else
+				intercepts[width == 0 ? 0 : Math.min(INTERCEPT_BINS - 1, (int) ((y - interceptLow) / width))]++;
+		}
+	}
+	
+	//Adds the lines from 'from' to 'to' of sorted as a group to the list of the TOP biggest ones if it's big enough, and returns the list
+	private static Group[] keep(Group[] top, long[] sorted, int from, int to)
+	{
+		int size = to - from;
+		if (top.length == TOP && top[TOP - 1].size() >= size)
+			return top;
+		Group[] kept = Arrays.copyOf(top, Math.min(top.length + 1, TOP));
+		int at = kept.length - 1;
+		while (at > 0 && kept[at - 1].size() < size)
+		{
+			kept[at] = kept[at - 1];
+			at--;
+		}
+		kept[at] = new Group(sorted, from, to);
+		return kept;
+	}
+	
+	//Runs the block on lines [0, size) BLOCK_SIZE at a time on the common ForkJoinPool, and waits for all of them
+	private void parallelFor(final Block body)
+	{
+		ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[(size + BLOCK_SIZE - 1) / BLOCK_SIZE];
+		for (int k = 0; k < tasks.length; k++)
+		{
+			final int block = k, from = k * BLOCK_SIZE, to = Math.min(size, from + BLOCK_SIZE);
+			tasks[k] = ForkJoinPool.commonPool().submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					body.run(block, from, to);
+				}
+			});
+		}
+		for (ForkJoinTask<?> task : tasks)
+			task.join();
+	}
+	
+	private interface Block
+	{
+		void run(int block, int from, int to);
+	}
+	
+	public int getLines()
+	{
+		return size;
+	}
+	
+	public int getVertical()
+	{
+		return vertical;
+	}
+	
+	//How long analyze() took, in nanoseconds
+	public long getNanos()
+	{
+		return nanos;
+	}
+	
+	public int getDirections()
+	{
+		return directions;
+	}
+	
+	public int getParallelGroups()
+	{
+		return parallelGroups;
+	}
+	
+	//Biggest groups of parallel lines, biggest first
+	public Group[] getParallel()
+	{
+		return parallel.clone();
+	}
+	
+	public long getPerpendicularGroups()
+	{
+		return perpendicularGroups;
+	}
+	
+	public long getPerpendicularLines()
+	{
+		return perpendicularLines;
+	}
+	
+	//Pairs of groups perpendicular to each other, with the most pairs of lines between them first
+	public Group[][] getPerpendicular()
+	{
+		return perpendicular.clone();
+	}
+	
+	public int getCoincidentGroups()
+	{
+		return coincidentGroups;
+	}
+	
+	public long getDuplicates()
+	{
+		return duplicates;
+	}
+	
+	//Biggest groups of lines that lie on the same line, biggest first
+	public Group[] getCoincident()
+	{
+		return coincident.clone();
+	}
+	
+	//Number of lines by the angle of their slope. Bin k has the lines from k - 90 to k - 89 degrees
+	public int[] getSlopes()
+	{
+		return slopes.clone();
+	}
+	
+	//Number of lines that aren't vertical by y intercept. The bins split the range from getInterceptLow() to getInterceptHigh() evenly
+	public int[] getIntercepts()
+	{
+		return intercepts.clone();
+	}
+	
+	public double getInterceptLow()
+	{
+		return interceptLow;
+	}
+	
+	public double getInterceptMedian()
+	{
+		return interceptMedian;
+	}
+	
+	public double getInterceptHigh()
+	{
+		return interceptHigh;
+	}
+	
+	//Human readable summary of everything, for showing in a dialog
+	public String getReport()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%,d lines (%,d vertical), analyzed in %.1f ms%n%n", size, vertical, nanos / 1e6));
+		
+		sb.append(String.format("PARALLEL: %,d directions, %,d of them with more than one line%n", directions, parallelGroups));
+		for (Group group : parallel)
+			sb.append(String.format("  %,9d lines at %s%n", group.size(), describe(group)));
+		
+		sb.append(String.format("%nPERPENDICULAR: %,d pairs of directions, %,d pairs of lines%n", perpendicularGroups, perpendicularLines));
+		for (Group[] pair : perpendicular)
+			sb.append(String.format("  %,9d x %,d lines at %s and %s%n", pair[0].size(), pair[1].size(), describe(pair[0]), describe(pair[1])));
+		
+		sb.append(String.format("%nCOINCIDENT: %,d lines lie on the same line as another one, in %,d groups%n", duplicates, coincidentGroups));
+		sb.append(String.format("  (Segments and rays count if they are on the same infinite line, even where they don't overlap)%n"));
+		for (Group group : coincident)
+		{
+			sb.append(String.format("  %,9d lines at %s, eg. lines", group.size(), describe(group)));
+			for (int k = 0; k < Math.min(5, group.size()); k++)
+				sb.append(' ').append(group.line(k));
+			sb.append(group.size() > 5 ? " ...\n" : "\n");
+		}
+		
+		//Slopes are shown in bins of 10 degrees, the 1 degree bins would make the report too long
+		sb.append(String.format("%nSLOPE (Angle in degrees)%n"));
+		int[] tens = new int[SLOPE_BINS / 10];
+		for (int bin = 0; bin < SLOPE_BINS; bin++)
+			tens[bin / 10] += slopes[bin];
+		for (int k = 0; k < tens.length; k++)
+			bar(sb, String.format("%4d to %4d", k * 10 - 90, k * 10 - 80), tens[k], max(tens));
+		
+		sb.append(String.format("%nY INTERCEPT (Median %.4g, %,d below and %,d above the range shown)%n", interceptMedian, interceptsBelow, interceptsAbove));
+		double width = (interceptHigh - interceptLow) / INTERCEPT_BINS;
+		for (int bin = 0; bin < INTERCEPT_BINS; bin++)
+			bar(sb, String.format("%11.4g", interceptLow + bin * width), intercepts[bin], max(intercepts));
+		return sb.toString();
+	}
+	
+	//Angle and slope of the lines of a group, Eg. "45.000 deg (slope 1)"
+	private String describe(Group group)
+	{
+		int i = group.line(0);
+		double a = lines.a(i), b = lines.b(i);
+		if (b == 0)
+			return "90.000 deg (vertical)";
+		double slope = -a / b + 0.0; //+ 0.0 turns -0 into 0
+		return String.format("%.3f deg (slope %.6g)", Math.toDegrees(Math.atan(slope)), slope);
+	}
+	
+	//One row of a histogram, with a bar as long as count is compared to the biggest bin
+	private static void bar(StringBuilder sb, String label, int count, int max)
+	{
+		sb.append("  ").append(label).append(String.format(" %,10d ", count));
+		int width = max == 0 ? 0 : (int) Math.round(40.0 * count / max);
+		for (int k = 0; k < width; k++)
+			sb.append('#');
+		sb.append('\n');
+	}
+	
+	private static int max(int[] bins)
+	{
+		int max = 0;
+		for (int count : bins)
+			max = Math.max(max, count);
+		return max;
+	}
+	
+	//Lines of a group, as a range of an array of packed keys
+	public static class Group
+	{
+		private long[] sorted;
+		private int from, to;
+		
+		Group(long[] sorted, int from, int to)
+		{
+			this.sorted = sorted;
+			this.from = from;
+			this.to = to;
+		}
+		
+		public int size()
+		{
+			return to - from;
+		}
+		
+		//Index of the k-th line of the group in the LineStore
+		public int line(int k)
+		{
+			return (int) (sorted[from + k] & INDEX_MASK);
+		}
+	}
+}
@@ -0,0 +1,320 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/* Saves and loads the lines of a Space in a compact binary format:
+ *
+ *   int     magic ("STLN")
+ *   int     version
+ *   int     number of lines (n)
+ *   byte    number of types, then for every type: byte id, byte length of name, name in ASCII (Eg. "SEGMENT")
+ *   byte[n] type id of every line. The INTEGER_ENDPOINTS bit is set if all four coordinates of the line are whole numbers
+ *   int[n]  color of every line (ARGB)
+ *   then the endpoints of every line, one after the other:
+ *     lines with INTEGER_ENDPOINTS: x1, y1, x2, y2 as zigzag varints of the difference from the previous such line (Lines snapped to the grid end up taking a few bytes)
+ *     other lines: x1, y1, x2, y2 as doubles
+ *
+ * Files are read through memory mapped windows straight into a LineStore, and written straight from the LineStore columns through a reused buffer, so no objects are made per line
+ * The file is mapped a window at a time rather than all at once, as one mapping can't be more than 2GB, and a window is dropped as soon as reading moves past it
+ * Saving writes to a temporary file next to the real one and then moves it in its place, so a save that fails halfway leaves the old file as it was,
+ * and saving over a file that was loaded never writes into it while a mapping of it could still be around
+ */
+public class SceneFile
+{
+	private static final int MAGIC = 0x53544C4E; //"STLN"
+	private static final int VERSION = 1;
+	private static final int INTEGER_ENDPOINTS = 0x80;
+	
+	private static final byte[] TYPES = {LineStore.LINE, LineStore.SEGMENT, LineStore.RAY};
+	private static final String[] TYPE_NAMES = {"LINE", "SEGMENT", "RAY"};
+	
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int WINDOW_SIZE = 1 << 28; //Bytes of the file mapped at once when loading
+	
+	//Saves the lines the space has right now. Can be called from any thread, as it goes through a snapshot
+	public static void save(Space space, File file) throws IOException
+	{
+		File absolute = file.getAbsoluteFile();
+		Path target = absolute.toPath();
+		//In the same directory, so it can be moved in place without copying it to another file system. Unlike Files.createTempFile(), which only lets the owner read it,
+		//this makes the file with the same permissions any new file gets, and copyPermissions() then gives it the ones of the file it replaces
+		Path temp = File.createTempFile("." + absolute.getName() + ".", ".tmp", absolute.getParentFile()).toPath();
+		try
+		{
+			write(space.snapshot(), temp);
+			copyPermissions(target, temp);
+			try
+			{
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists(temp); //Only still there if something went wrong
+		}
+	}
+	
+	private static void write(LineStore lines, Path path) throws IOException
+	{
+		int n = lines.size();
+		
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			
+			buf.putInt(MAGIC);
+			buf.putInt(VERSION);
+			buf.putInt(n);
+			buf.put((byte) TYPES.length);
+			for (int t = 0; t < TYPES.length; t++)
+			{
+				byte[] name = TYPE_NAMES[t].getBytes(StandardCharsets.US_ASCII);
+				buf.put(TYPES[t]);
+				buf.put((byte) name.length);
+				buf.put(name);
+			}
+			
+			for (int i = 0; i < n; i++)
+			{
+				ensure(channel, buf, 1);
+				buf.put((byte) (lines.kind(i) | (isInteger(lines, i) ? INTEGER_ENDPOINTS : 0)));
+			}
+			
+			for (int i = 0; i < n; i++)
+			{
+				ensure(channel, buf, 4);
+				buf.putInt(lines.col(i));
+			}
+			
+			long px1 = 0, py1 = 0, px2 = 0, py2 = 0; //Endpoints of the previous line with integer endpoints
+			for (int i = 0; i < n; i++)
+			{
+				ensure(channel, buf, 4 * 10);
+				if (isInteger(lines, i))
+				{
+					long x1 = (long) lines.x1(i), y1 = (long) lines.y1(i), x2 = (long) lines.x2(i), y2 = (long) lines.y2(i);
+					putVarLong(buf, x1 - px1);
+					putVarLong(buf, y1 - py1);
+					putVarLong(buf, x2 - px2);
+					putVarLong(buf, y2 - py2);
+					px1 = x1;
+					py1 = y1;
+					px2 = x2;
+					py2 = y2;
+				}
+				else
+				{
+					buf.putDouble(lines.x1(i));
+					buf.putDouble(lines.y1(i));
+					buf.putDouble(lines.x2(i));
+					buf.putDouble(lines.y2(i));
+				}
+			}
+			
+			flush(channel, buf);
+			channel.force(false); //On the disk before it replaces the old file
+		}
+	}
+	
+	//Reads the lines in the file into a new store (Which can then be put in a Space with Space.replace())
+	public static LineStore load(File file) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			Window in = new Window(channel, 0);
+			ByteBuffer buf = in.need(12);
+			if (buf.remaining() < 12 || buf.getInt() != MAGIC)
+				throw new IOException("Not a scene file: " + file);
+			int version = buf.getInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported scene file version " + version + ": " + file);
+			int n = buf.getInt();
+			if (n < 0)
+				throw new IOException("Corrupt scene file: " + file);
+			
+			//Maps the type ids used in the file to our kinds of lines
+			byte[] kinds = new byte[128];
+			boolean[] known = new boolean[128];
+			int types = in.need(1).get();
+			for (int t = 0; t < types; t++)
+			{
+				buf = in.need(2);
+				int id = buf.get();
+				byte[] name = new byte[buf.get()];
+				in.need(name.length).get(name);
+				kinds[id] = kindOf(new String(name, StandardCharsets.US_ASCII));
+				known[id] = true;
+			}
+			
+			//The type ids, colors and endpoints are each read through a window of their own
+			long kindsAt = in.position();
+			Window typeIds = new Window(channel, kindsAt), cols = new Window(channel, kindsAt + n);
+			in = new Window(channel, kindsAt + 5L * n);
+			
+			LineStore lines = new LineStore();
+			long px1 = 0, py1 = 0, px2 = 0, py2 = 0;
+			for (int i = 0; i < n; i++)
+			{
+				int type = typeIds.need(1).get() & 0xFF;
+				int id = type & ~INTEGER_ENDPOINTS;
+				if (!known[id])
+					throw new IOException("Type id " + id + " of line " + i + " isn't in the type table of scene file: " + file);
+				
+				double x1, y1, x2, y2;
+				buf = in.need(4 * 10);
+				if ((type & INTEGER_ENDPOINTS) != 0)
+				{
+					px1 += getVarLong(buf);
+					py1 += getVarLong(buf);
+					px2 += getVarLong(buf);
+					py2 += getVarLong(buf);
+					x1 = px1;
+					y1 = py1;
+					x2 = px2;
+					y2 = py2;
+				}
+				else
+				{
+					x1 = buf.getDouble();
+					y1 = buf.getDouble();
+					x2 = buf.getDouble();
+					y2 = buf.getDouble();
+				}
+				
+				//LineStore.add() would give these a NaN normal, which would then get into the snapping and drawing
+				if (x1 == x2 && y1 == y2 || !isFinite(x1) || !isFinite(y1) || !isFinite(x2) || !isFinite(y2))
+					throw new IOException("Line " + i + " has no length or coordinates that aren't numbers in scene file: " + file);
+				lines.add(kinds[id], x1, y1, x2, y2, cols.need(4).getInt());
+			}
+			return lines;
+		}
+		catch (RuntimeException e) //Buffer under/overflows, bad type ids and bad offsets from a corrupt file
+		{
+			throw new IOException("Corrupt scene file: " + file, e);
+		}
+	}
+	
+	private static byte kindOf(String name) throws IOException
+	{
+		for (int t = 0; t < TYPES.length; t++)
+		{
+			if (TYPE_NAMES[t].equals(name))
+				return TYPES[t];
+		}
+		throw new IOException("Unknown component type in scene file: " + name);
+	}
+	
+	//Whether all four coordinates of line i are whole numbers that fit in a long
+	private static boolean isInteger(LineStore lines, int i)
+	{
+		return isInteger(lines.x1(i)) && isInteger(lines.y1(i)) && isInteger(lines.x2(i)) && isInteger(lines.y2(i));
+	}
+	
+	private static boolean isInteger(double v)
+	{
+		return v == Math.rint(v) && Math.abs(v) < 1e15;
+	}
+	
+	private static boolean isFinite(double v)
+	{
+		return !Double.isNaN(v) && !Double.isInfinite(v);
+	}
+	
+	//Gives 'to' the POSIX permissions of 'from', if there is a file 'from' and the file system has them
+	private static void copyPermissions(Path from, Path to) throws IOException
+	{
+		if (Files.exists(from) && from.getFileSystem().supportedFileAttributeViews().contains("posix"))
+			Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+	}
+	
+	//Writes v zigzag encoded (So small negative numbers are small too) in 7 bit groups, with the top bit of every byte but the last set
+	private static void putVarLong(ByteBuffer buf, long v)
+	{
+		long zigzag = (v << 1) ^ (v >> 63);
+		while ((zigzag & ~0x7FL) != 0)
+		{
+			buf.put((byte) ((zigzag & 0x7F) | 0x80));
+			zigzag >>>= 7;
+		}
+		buf.put((byte) zigzag);
+	}
+	
+	private static long getVarLong(ByteBuffer buf)
+	{
+		long zigzag = 0;
+		int shift = 0;
+		byte b;
+		do
+		{
+			b = buf.get();
+			zigzag |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+	
+	//Makes sure buf has room for 'bytes' more bytes, writing it out to the channel if it doesn't
+	private static void ensure(FileChannel channel, ByteBuffer buf, int bytes) throws IOException
+	{
+		if (buf.remaining() < bytes)
+			flush(channel, buf);
+	}
+	
+	private static void flush(FileChannel channel, ByteBuffer buf) throws IOException
+	{
+		buf.flip();
+		while (buf.hasRemaining())
+			channel.write(buf);
+		buf.clear();
+	}
+	
+	//Reads a file through a memory mapped window of it, which moves along as it's read
+	private static class Window
+	{
+		private final FileChannel channel;
+		private final long fileSize;
+		private MappedByteBuffer buf;
+		private long start; //Where in the file buf starts
+		
+		Window(FileChannel channel, long position) throws IOException
+		{
+			this.channel = channel;
+			fileSize = channel.size();
+			map(position);
+		}
+		
+		//Returns the buffer to read from, with at least 'bytes' bytes left in it unless the file ends before that
+		ByteBuffer need(int bytes) throws IOException
+		{
+			if (buf.remaining() < bytes && start + buf.limit() < fileSize)
+				map(position());
+			return buf;
+		}
+		
+		//Where in the file the next read is from
+		long position()
+		{
+			return start + buf.position();
+		}
+		
+		//Past the end of the file, the size is negative and map() throws an IllegalArgumentException, which load() reports as a corrupt file
+		private void map(long position) throws IOException
+		{
+			start = position;
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, fileSize - position));
+		}
+	}
+}
@@ -0,0 +1,9 @@
+//Part of a line between the start and end points
+public class Segment extends Line
+{
+	@Override
+	public byte getKind()
+	{
+		return LineStore.SEGMENT;
+	}
+}
@@ -1,38 +1,264 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import Utility.Vector2i;
 
+/* All the lines that have been drawn, with their undo history and what's needed to snap to them
+ *
+ * A Space has one thread that owns it (The event dispatch thread for the one Main shows), and only that thread may call the functions that change it or snapFrom()
+ * Other threads can still:
+ *   - read it through snapshot(), which gives the lines as they were after the last change, and never changes. Reading one needs no locks
+ *   - change it through submit(). The command is queued and carried out on the owning thread the next time it calls applyPending(), which Main does once every frame
+ */
 public class Space
 {
-	private double snapRadius = 0.3;
+	private static final int MAX_COMMANDS = 256; //Commands carried out by one call of applyPending(), so a flood of them can't hold up a frame for long
 	
-	private List<Component> comps = new ArrayList<Component>();
+	private static final double MAX_SNAP_RADIUS = 0.3; //Also the cell size of snapPoints, a bigger radius would make snapFrom() look through a lot more cells
+	private double snapRadius = MAX_SNAP_RADIUS;
 	
+	private LineStore lines = new LineStore();
+	private volatile LineStore snapshot = lines.snapshot(); //Published after every change, for other threads to read
+	private volatile long generation; //Goes up whenever lines are removed. Caches that only know how to add new lines have to start over when it changes
+	
+	//Changes submitted by other threads, waiting to be carried out. Any number of threads can add to it, only the owning thread takes from it
+	private ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<Command>();
+	private boolean applying; //Whether applyPending() is running, in which case the snapshot is only published once at the end
+	
+	//Index of the endpoints of all lines, so snapFrom() doesn't have to go through every line. Id of a point is 2 * index of line (+1 for the end point)
+	private SpatialHash snapPoints = new SpatialHash(MAX_SNAP_RADIUS, new SpatialHash.Coords()
+	{
+		@Override
+		public double x(int id)
+		{
+			return id % 2 == 0 ? lines.x1(id / 2) : lines.x2(id / 2);
+		}
+		
+		@Override
+		public double y(int id)
+		{
+			return id % 2 == 0 ? lines.y1(id / 2) : lines.y2(id / 2);
+		}
+	});
+	
+	private History history = new History(1000, 64 * 1024 * 1024); //Up to 1000 steps, or 64MB of removed lines
+	
+	private Intersections intersections = new Intersections();
+	
+	//Adds a finished component to the space. Only lines can be stored, their data gets copied into the LineStore
 	public void push(Component comp)
 	{
-		comps.add(comp);
+		if (!(comp instanceof Line))
+		{
+			System.err.println("ERROR at Space.java.push() : only lines can be stored in Space");
+			return;
+		}
+		Line line = (Line) comp;
+		add(line.getKind(), line.start.x, line.start.y, line.end.x, line.end.y, line.col);
+	}
+	
+	//Adds a line of the given kind (See LineStore) straight from its coordinates, without needing a Line object
+	public void add(byte kind, double x1, double y1, double x2, double y2, int col)
+	{
+		int i = lines.size();
+		insert(lines.add(kind, x1, y1, x2, y2, col));
+		history.added(i, i + 1);
+		publish();
+	}
+	
+	//Adds all lines of a batch as a single step (Which gets undone all at once)
+	public void addAll(LineStore batch)
+	{
+		int from = lines.size();
+		append(batch);
+		history.added(from, lines.size());
+		publish();
 	}
 	
-	public List<Component> getComps()
+	//Removes everything from the space
+	public void clear()
 	{
-		return comps;
+		replace(new LineStore());
+	}
+	
+	//Replaces all lines of the space with the ones in the store (Eg. when a scene is opened)
+	public void replace(LineStore store)
+	{
+		history.replaced(swapLines(store));
+		publish();
+	}
+	
+	public void undo()
+	{
+		history.undo(this);
+		publish();
+	}
+	
+	public void redo()
+	{
+		history.redo(this);
+		publish();
+	}
+	
+	//Queues a change to be carried out on the thread that owns the space. Can be called from any thread
+	public void submit(Command command)
+	{
+		commands.add(command);
+	}
+	
+	//Carries out the commands submitted so far (Up to MAX_COMMANDS of them, the rest wait for the next call), and publishes one snapshot after all of them
+	//Must be called on the thread that owns the space. Returns whether any command was carried out
+	public boolean applyPending()
+	{
+		Command command = commands.poll();
+		if (command == null)
+			return false;
+		applying = true;
+		try
+		{
+			for (int n = 0; command != null; n++)
+			{
+				command.apply(this);
+				if (n + 1 == MAX_COMMANDS)
+					break;
+				command = commands.poll();
+			}
+		}
+		finally
+		{
+			applying = false;
+			publish();
+		}
+		return true;
+	}
+	
+	//The lines of the space as they were after the last change. Can be called from any thread, and the store it returns never changes
+	public LineStore snapshot()
+	{
+		return snapshot;
+	}
+	
+	//Makes the lines as they are now the snapshot other threads see
+	private void publish()
+	{
+		if (!applying)
+			snapshot = lines.snapshot();
+	}
+	
+	//The following functions change the lines of the space without adding a step to the history. They are used by History itself to undo and redo steps
+	
+	//Adds the lines of the store to the end of the space
+	void append(LineStore store)
+	{
+		for (int i = 0; i < store.size(); i++)
+			insert(lines.add(store.kind(i), store.x1(i), store.y1(i), store.x2(i), store.y2(i), store.col(i)));
+	}
+	
+	//Removes the lines from index 'from' to the end, and returns them
+	LineStore removeFrom(int from)
+	{
+		for (int i = from; i < lines.size(); i++)
+		{
+			snapPoints.remove(lines.x1(i), lines.y1(i), 2 * i);
+			snapPoints.remove(lines.x2(i), lines.y2(i), 2 * i + 1);
+		}
+		intersections.removeFrom(lines, from);
+		generation++;
+		return lines.split(from);
+	}
+	
+	//Makes the store the LineStore of the space, and returns the one it had before
+	LineStore swapLines(LineStore store)
+	{
+		LineStore old = lines;
+		lines = store;
+		snapPoints.clear();
+		intersections.clear();
+		for (int i = 0; i < lines.size(); i++)
+			insert(i);
+		generation++;
+		return old;
+	}
+	
+	//Puts the endpoints of line i in the snap index, and the line in the index of intersections
+	private void insert(int i)
+	{
+		snapPoints.insert(lines.x1(i), lines.y1(i), 2 * i);
+		snapPoints.insert(lines.x2(i), lines.y2(i), 2 * i + 1);
+		intersections.insert(lines, i);
+	}
+	
+	//The lines of the space. Only for the owning thread, as they change along with the space. Other threads have to use snapshot()
+	public LineStore getLines()
+	{
+		return lines;
+	}
+	
+	public long getGeneration()
+	{
+		return generation;
 	}
 	
 	public void pop()
 	{
-		if (comps.size() > 0)
-			comps.remove(comps.size() - 1);
+		if (lines.size() > 0)
+		{
+			int i = lines.size() - 1;
+			history.removed(i, removeFrom(i));
+			publish();
+		}
 		else
 			System.err.println("ERROR at Space.java.pop() : comps List empty");
 	}
 	
+	//Sets how close a point has to be to something (In space units) to snap to it. Main keeps it the same size on screen as the camera zooms, up to MAX_SNAP_RADIUS
+	public void setSnapRadius(double snapRadius)
+	{
+		this.snapRadius = Math.min(snapRadius, MAX_SNAP_RADIUS);
+	}
+	
 	//Returns coordinate to which the point passed must "snap" to
+	//Endpoints of lines already in the space get priority, then points where two lines cross, then the points of the grid
 	public Vector2i snapFrom(Vector2i point)
 	{
-		Vector2i snap = point.round();
-		if (snap.distanceFrom(point) < snapRadius)
-			return snap;
+		double[] snap = new double[2];
+		if (snapFrom(point.x, point.y, snap))
+			return new Vector2i(snap[0], snap[1]);
 		return point;
 	}
+	
+	//Same as snapFrom(Vector2i), without making any objects, so it can be called for every mouse move
+	//Puts the coordinate (x, y) snaps to in out as {x, y} ((x, y) itself if there's nothing near it), and returns whether it snapped to anything
+	//Endpoints are looked up in snapPoints, and intersections in an index of the lines by angle and distance from the origin (See Intersections), so neither goes through every line
+	public boolean snapFrom(double x, double y, double[] out)
+	{
+		int nearest = snapPoints.nearest(x, y, snapRadius);
+		if (nearest != -1)
+		{
+			int i = nearest / 2;
+			out[0] = nearest % 2 == 0 ? lines.x1(i) : lines.x2(i);
+			out[1] = nearest % 2 == 0 ? lines.y1(i) : lines.y2(i);
+			return true;
+		}
+		
+		if (intersections.nearest(lines, x, y, snapRadius, out))
+			return true;
+		
+		double roundX = Math.round(x), roundY = Math.round(y);
+		if (Math.hypot(roundX - x, roundY - y) < snapRadius)
+		{
+			out[0] = roundX;
+			out[1] = roundY;
+			return true;
+		}
+		out[0] = x;
+		out[1] = y;
+		return false;
+	}
+	
+	//A change to a space, which can be made on any thread with submit()
+	public interface Command
+	{
+		//Makes the change. Called on the thread that owns the space
+		void apply(Space space);
+	}
 }
@@ -0,0 +1,204 @@
+import java.util.Arrays;
+
+//Uniform grid hash of points in space. Every point is put in the square cell of side 'cellSize' it falls in,
+//so finding the points near a coordinate only needs a look at the cells around it instead of every point
+//Points are only stored as int ids (Eg. an index into a LineStore), their coordinates are looked up through 'coords' when needed
+public class SpatialHash
+{
+	//Gives the coordinates of the point with a given id
+	public interface Coords
+	{
+		public double x(int id);
+		public double y(int id);
+	}
+	
+	private double cellSize;
+	private Coords coords;
+	
+	//Cells by key, in an open addressing table (Linear probing, null value = empty slot). Unlike a HashMap<Long, Cell>, looking up a cell doesn't box its key
+	private long[] keys = new long[16];
+	private Cell[] cells = new Cell[16];
+	private int cellCount;
+	private int size;
+	
+	public SpatialHash(double cellSize, Coords coords)
+	{
+		this.cellSize = cellSize;
+		this.coords = coords;
+	}
+	
+	public void insert(double x, double y, int id)
+	{
+		long key = key(cell(x), cell(y));
+		Cell cell = get(key);
+		if (cell == null)
+			cell = put(key, new Cell());
+		cell.add(id);
+		size++;
+	}
+	
+	//Removes the point with the given id, which must have been inserted at (x, y)
+	public void remove(double x, double y, int id)
+	{
+		long key = key(cell(x), cell(y));
+		Cell cell = get(key);
+		if (cell == null)
+			return;
+		if (cell.remove(id))
+			size--;
+		if (cell.size == 0)
+			removeCell(key);
+	}
+	
+	//Returns the id of the point closest to (x, y) that lies within radius of it, or -1 if there is none
+	//Only the cells overlapping the square of side 2*radius around (x, y) are looked at
+	public int nearest(double x, double y, double radius)
+	{
+		int best = -1;
+		double bestDist = radius * radius;
+		long xMin = cell(x - radius), xMax = cell(x + radius);
+		long yMin = cell(y - radius), yMax = cell(y + radius);
+		for (long cx = xMin; cx <= xMax; cx++)
+		{
+			for (long cy = yMin; cy <= yMax; cy++)
+			{
+				Cell cell = get(key(cx, cy));
+				if (cell == null)
+					continue;
+				for (int i = 0; i < cell.size; i++)
+				{
+					int id = cell.ids[i];
+					double dx = coords.x(id) - x, dy = coords.y(id) - y;
+					double dist = dx * dx + dy * dy;
+					if (dist < bestDist)
+					{
+						bestDist = dist;
+						best = id;
+					}
+				}
+			}
+		}
+		return best;
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	public void clear()
+	{
+		Arrays.fill(cells, null);
+		cellCount = 0;
+		size = 0;
+	}
+	
+	private long cell(double v)
+	{
+		return (long) Math.floor(v / cellSize);
+	}
+	
+	//Packs the cell coordinates into one long. Multiplying by an odd number doesn't lose anything, but spreads the bits out,
+	//as Long.hashCode() of the packed value alone would be cx ^ cy, which is the same for a lot of nearby cells
+	private static long key(long cx, long cy)
+	{
+		return ((cx << 32) ^ (cy & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+	}
+	
+	private Cell get(long key)
+	{
+		int mask = keys.length - 1;
+		for (int i = slot(key, mask); cells[i] != null; i = (i + 1) & mask)
+			if (keys[i] == key)
+				return cells[i];
+		return null;
+	}
+	
+	//Adds a cell that isn't in the table yet, and returns it
+	private Cell put(long key, Cell cell)
+	{
+		if ((cellCount + 1) * 2 > keys.length) //Kept at most half full, so probes stay short
+			resize(keys.length * 2);
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		while (cells[i] != null)
+			i = (i + 1) & mask;
+		keys[i] = key;
+		cells[i] = cell;
+		cellCount++;
+		return cell;
+	}
+	
+	private void removeCell(long key)
+	{
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		while (cells[i] != null && keys[i] != key)
+			i = (i + 1) & mask;
+		if (cells[i] == null)
+			return;
+		cells[i] = null;
+		cellCount--;
+		
+		//Moves later cells of the same run back into the hole if their probe would otherwise pass over it, so get() never stops early at it
+		for (int j = (i + 1) & mask; cells[j] != null; j = (j + 1) & mask)
+		{
+			int home = slot(keys[j], mask);
+			boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j); //Whether home is cyclically in (i, j], in which case it can stay
+			if (!between)
+			{
+				keys[i] = keys[j];
+				cells[i] = cells[j];
+				cells[j] = null;
+				i = j;
+			}
+		}
+	}
+	
+	private void resize(int capacity)
+	{
+		long[] oldKeys = keys;
+		Cell[] oldCells = cells;
+		keys = new long[capacity];
+		cells = new Cell[capacity];
+		cellCount = 0;
+		for (int i = 0; i < oldCells.length; i++)
+			if (oldCells[i] != null)
+				put(oldKeys[i], oldCells[i]);
+	}
+	
+	//Same spreading as HashMap does for Long keys
+	private static int slot(long key, int mask)
+	{
+		int h = (int) (key ^ (key >>> 32));
+		return (h ^ (h >>> 16)) & mask;
+	}
+	
+	//Ids of the points in one cell
+	private static class Cell
+	{
+		int[] ids = new int[2];
+		int size;
+		
+		void add(int id)
+		{
+			if (size == ids.length)
+				ids = Arrays.copyOf(ids, size * 2);
+			ids[size++] = id;
+		}
+		
+		boolean remove(int id)
+		{
+			for (int i = size - 1; i >= 0; i--)
+			{
+				if (ids[i] == id)
+				{
+					//Order inside a cell doesn't matter, so the last point just takes the removed one's place
+					ids[i] = ids[--size];
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,233 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+
+/* Writes the lines of a Space as an SVG drawing, for printing or editing them in other programs
+ * Every line is clipped to the exported rectangle the same way Line.render() clips it to the camera, and the file is written straight from the LineStore
+ * through one reused byte buffer, in one pass, so even millions of lines take no more memory than the buffer
+ * Lines next to each other with the same color go in one <path>, and colors get a CSS class each, so the color isn't written again for every line
+ */
+public class SvgExport
+{
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_CLASSES = 256; //Colors after this many get written on their paths instead, so a scene with a different color for every line doesn't need a huge style sheet
+	private static final int MAX_PATH_LINES = 1000; //Lines per <path>, so that no single element gets too long for other programs
+	private static final long SCALE = 100; //Coordinates are in pixels and written to a hundredth of one, which is more than enough
+	
+	private Space space;
+	private double ppu;
+	private int width, height;
+	private double xLeft, yUp, xRight, yDown; //The exported rectangle in space
+	
+	private OutputStream out;
+	private byte[] buf = new byte[BUFFER_SIZE];
+	private int size;
+	
+	//Drawing of width x height pixels, showing the space around (centerX, centerY) at ppu pixels per unit. Same as what an ImageExport with these values shows
+	public SvgExport(Space space, double centerX, double centerY, double ppu, int width, int height)
+	{
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Drawing must be at least 1x1, not " + width + "x" + height);
+		this.space = space;
+		this.ppu = ppu;
+		this.width = width;
+		this.height = height;
+		xLeft = centerX - width / 2.0 / ppu;
+		yUp = centerY + height / 2.0 / ppu;
+		xRight = centerX + width / 2.0 / ppu;
+		yDown = centerY - height / 2.0 / ppu;
+	}
+	
+	//Writes the drawing to file, and returns how many lines were in it. Can be called from any thread, it writes the space as it was at the start even if it changes meanwhile
+	public int writeSvg(File file) throws IOException
+	{
+		LineStore lines = space.snapshot();
+		try (OutputStream out = new FileOutputStream(file))
+		{
+			this.out = out;
+			size = 0;
+			
+			write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"");
+			write(width);
+			write("\" height=\"");
+			write(height);
+			write("\" viewBox=\"0 0 ");
+			write(width);
+			write(' ');
+			write(height);
+			write("\">\n");
+			
+			//The style sheet has to come first, so the color column is gone through once to give every color its class. This is the only part that isn't streamed, and it's at most MAX_CLASSES entries
+			HashMap<Integer, Integer> classes = new HashMap<Integer, Integer>();
+			write("<style>path{fill:none;stroke-width:1}");
+			for (int i = 0; i < lines.size() && classes.size() < MAX_CLASSES; i++)
+			{
+				int col = lines.col(i);
+				if (!classes.containsKey(col))
+				{
+					write(".c");
+					write(classes.size());
+					write('{');
+					writeStroke(col, ':', ';');
+					write('}');
+					classes.put(col, classes.size());
+				}
+			}
+			write("</style>\n<rect width=\"100%\" height=\"100%\" fill=\"#FFFFFF\"/>\n");
+			
+			double[] clipped = new double[4];
+			int count = 0, pathLines = 0, pathCol = 0;
+			for (int i = 0; i < lines.size(); i++)
+			{
+				byte kind = lines.kind(i);
+				if (!Geometry.clip(lines.x1(i), lines.y1(i), lines.x2(i), lines.y2(i), Geometry.minT(kind), Geometry.maxT(kind), xLeft, yUp, xRight, yDown, clipped))
+					continue;
+				
+				//Starts a new path whenever the color changes, or the current one is full
+				int col = lines.col(i);
+				if (pathLines == 0 || col != pathCol || pathLines == MAX_PATH_LINES)
+				{
+					if (pathLines > 0)
+						write("\"/>\n");
+					Integer cls = classes.get(col);
+					if (cls != null)
+					{
+						write("<path class=\"c");
+						write(cls);
+						write("\" ");
+					}
+					else
+					{
+						write("<path ");
+						writeStroke(col, '=', ' ');
+					}
+					write("d=\"");
+					pathCol = col;
+					pathLines = 0;
+				}
+				
+				//Space has y going up and SVG has it going down
+				write('M');
+				write((clipped[0] - xLeft) * ppu);
+				write(' ');
+				write((yUp - clipped[1]) * ppu);
+				write('L');
+				write((clipped[2] - xLeft) * ppu);
+				write(' ');
+				write((yUp - clipped[3]) * ppu);
+				pathLines++;
+				count++;
+			}
+			if (pathLines > 0)
+				write("\"/>\n");
+			write("</svg>\n");
+			flush();
+			return count;
+		}
+		finally
+		{
+			this.out = null;
+		}
+	}
+	
+	//Writes the stroke color of col, as CSS (stroke:#RRGGBB;) or as attributes (stroke="#RRGGBB" ), with the opacity after it if it isn't opaque
+	private void writeStroke(int col, char equals, char end) throws IOException
+	{
+		boolean attribute = equals == '=';
+		write("stroke");
+		write(equals);
+		if (attribute)
+			write('"');
+		write('#');
+		for (int shift = 20; shift >= 0; shift -= 4)
+			write("0123456789ABCDEF".charAt(col >> shift & 0xF));
+		if (attribute)
+			write('"');
+		write(end);
+		int alpha = col >>> 24;
+		if (alpha != 0xFF)
+		{
+			write("stroke-opacity");
+			write(equals);
+			if (attribute)
+				write('"');
+			write(alpha / 255.0);
+			if (attribute)
+				write('"');
+			write(end);
+		}
+	}
+	
+	private void write(String s) throws IOException
+	{
+		for (int i = 0; i < s.length(); i++)
+			write(s.charAt(i));
+	}
+	
+	private void write(char c) throws IOException
+	{
+		if (size == BUFFER_SIZE)
+			flush();
+		buf[size++] = (byte) c;
+	}
+	
+	//Writes a whole number in decimal, without making a String for it
+	private void write(long n) throws IOException
+	{
+		if (size + 20 > BUFFER_SIZE)
+			flush();
+		if (n < 0)
+		{
+			buf[size++] = '-';
+			n = -n;
+		}
+		int end = size + digits(n);
+		for (int i = end - 1; i >= size; i--)
+		{
+			buf[i] = (byte) ('0' + n % 10);
+			n /= 10;
+		}
+		size = end;
+	}
+	
+	//Writes a number rounded to a 1/SCALE, without the trailing zeroes (Eg. 12.5 rather than 12.50, and 3 rather than 3.00)
+	private void write(double d) throws IOException
+	{
+		long n = Math.round(d * SCALE);
+		if (n < 0)
+		{
+			write('-');
+			n = -n;
+		}
+		write(n / SCALE);
+		long frac = n % SCALE;
+		if (frac != 0)
+		{
+			write('.');
+			for (long digit = SCALE / 10; frac != 0; digit /= 10)
+			{
+				write((char) ('0' + frac / digit));
+				frac %= digit;
+			}
+		}
+	}
+	
+	private static int digits(long n)
+	{
+		int digits = 1;
+		while (n >= 10)
+		{
+			n /= 10;
+			digits++;
+		}
+		return digits;
+	}
+	
+	private void flush() throws IOException
+	{
+		out.write(buf, 0, size);
+		size = 0;
+	}
+}
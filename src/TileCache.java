@@ -0,0 +1,185 @@
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+//Keeps the lines of a Space drawn on square tiles of TILE_SIZE x TILE_SIZE pixels, fixed in space for the current ppu
+//While the user is drawing or panning, the lines in the space don't change, so the tiles on screen can just be copied instead of drawing every line again
+//Tiles are thrown away when the ppu changes or a line is removed. New lines are drawn onto the tiles that are already there
+//Least recently used tiles are thrown away once the tiles take up more than maxBytes
+//Tiles that need drawing are drawn in parallel on a ForkJoinPool of 'threads' threads
+public class TileCache
+{
+	public static final int TILE_SIZE = 256;
+	private static final int TILE_BYTES = TILE_SIZE * TILE_SIZE * 4;
+	private static final int MARGIN = 2; //Lines within this many pixels outside a tile are still drawn on it, so their anti-aliased edges aren't cut off at the border
+	
+	private long maxBytes;
+	private LinkedHashMap<Long, Tile> tiles;
+	
+	//State of the space and camera the tiles were drawn for
+	private double ppu;
+	private double originX, originY; //Tiles are fixed relative to the camera's floating origin, so they have to be drawn again when it moves
+	private long generation = -1;
+	private int rows; //Number of lines of the store that are on the tiles
+	
+	private AffineTransform blit = new AffineTransform();
+	private double[] viewBounds = new double[4];
+	private List<Tile> visible = new ArrayList<Tile>(), missing = new ArrayList<Tile>();
+	
+	private ForkJoinPool pool;
+	
+	public TileCache(long maxBytes, int threads)
+	{
+		this.maxBytes = maxBytes;
+		setThreads(threads);
+		tiles = new LinkedHashMap<Long, Tile>(16, 0.75f, true) //Access order, so the eldest entry is the least recently used one
+		{
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Tile> eldest)
+			{
+				return (long) size() * TILE_BYTES > TileCache.this.maxBytes;
+			}
+		};
+	}
+	
+	//Draws the lines of the space seen by cam. bg must already be translated by cam.translate()
+	public void render(Space space, Camera cam, Graphics2D bg)
+	{
+		LineStore lines = space.getLines();
+		if (cam.getPPU() != ppu || cam.getOriginX() != originX || cam.getOriginY() != originY || space.getGeneration() != generation || lines.size() < rows)
+		{
+			tiles.clear();
+			ppu = cam.getPPU();
+			originX = cam.getOriginX();
+			originY = cam.getOriginY();
+			generation = space.getGeneration();
+			rows = 0;
+		}
+		
+		//Lines added since the tiles were drawn only need to be drawn on top of them
+		if (lines.size() > rows)
+		{
+			drawAll(new ArrayList<Tile>(tiles.values()), cam, lines, rows, lines.size());
+			rows = lines.size();
+		}
+		
+		//Range of tiles in view. Tile (tx, ty) covers the pixels from tx*TILE_SIZE to (tx+1)*TILE_SIZE, where pixel x of a point in space is (x - originX)*ppu, same as the camera draws it
+		double[] bounds = cam.getBounds(viewBounds);
+		long txMin = (long) Math.floor((bounds[0] - originX) * ppu / TILE_SIZE), txMax = (long) Math.floor((bounds[2] - originX) * ppu / TILE_SIZE);
+		long tyMin = (long) Math.floor((bounds[3] - originY) * ppu / TILE_SIZE), tyMax = (long) Math.floor((bounds[1] - originY) * ppu / TILE_SIZE);
+		
+		visible.clear();
+		missing.clear();
+		for (long tx = txMin; tx <= txMax; tx++)
+		{
+			for (long ty = tyMin; ty <= tyMax; ty++)
+			{
+				long key = (tx << 32) ^ (ty & 0xFFFFFFFFL);
+				Tile tile = tiles.get(key);
+				if (tile == null)
+				{
+					tile = new Tile(tx, ty, bg.getDeviceConfiguration().createCompatibleImage(TILE_SIZE, TILE_SIZE, Transparency.TRANSLUCENT));
+					tiles.put(key, tile);
+					missing.add(tile);
+				}
+				visible.add(tile);
+			}
+		}
+		drawAll(missing, cam, lines, 0, rows);
+		
+		for (Tile tile : visible)
+		{
+			//bg has y going up, so the tile's image has to be flipped to get drawn the right way up
+			blit.setTransform(1, 0, 0, -1, tile.tx * TILE_SIZE, (tile.ty + 1) * TILE_SIZE);
+			bg.drawImage(tile.img, blit, null);
+		}
+	}
+	
+	//Sets how many threads tiles are drawn on. With 1, they are all drawn on the calling thread
+	public void setThreads(int threads)
+	{
+		if (pool != null)
+			pool.shutdown();
+		pool = threads > 1 ? new ForkJoinPool(threads) : null;
+	}
+	
+	//Draws lines 'from' to 'to' on every tile of the list. Every tile has its own image and Graphics2D, so they can be drawn at the same time on the pool
+	//The pixels of a tile don't depend on which thread drew it, so the result is the same as drawing them one by one
+	private void drawAll(List<Tile> todo, final Camera cam, final LineStore lines, final int from, final int to)
+	{
+		if (pool == null || todo.size() < 2)
+		{
+			for (Tile tile : todo)
+				drawOn(tile, cam, lines, from, to);
+			return;
+		}
+		
+		ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[todo.size()];
+		for (int i = 0; i < tasks.length; i++)
+		{
+			final Tile tile = todo.get(i);
+			tasks[i] = pool.submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					drawOn(tile, cam, lines, from, to);
+				}
+			});
+		}
+		for (ForkJoinTask<?> task : tasks)
+			task.join();
+	}
+	
+	public void clear()
+	{
+		tiles.clear();
+		rows = 0;
+	}
+	
+	private void drawOn(Tile tile, Camera cam, LineStore lines, int from, int to)
+	{
+		Graphics2D g = tile.img.createGraphics();
+		if (from == 0)
+		{
+			g.setComposite(AlphaComposite.Clear);
+			g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+			g.setComposite(AlphaComposite.SrcOver);
+		}
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+		
+		//Pixel (px, py) of the space (Relative to the floating origin) goes to pixel (px - tx*TILE_SIZE, (ty+1)*TILE_SIZE - py) of the tile
+		g.translate(-tile.tx * TILE_SIZE, (tile.ty + 1) * TILE_SIZE);
+		g.scale(1.0, -1.0);
+		
+		double xLeft = originX + (double) (tile.tx * TILE_SIZE - MARGIN) / ppu, xRight = originX + (double) ((tile.tx + 1) * TILE_SIZE + MARGIN) / ppu;
+		double yDown = originY + (double) (tile.ty * TILE_SIZE - MARGIN) / ppu, yUp = originY + (double) ((tile.ty + 1) * TILE_SIZE + MARGIN) / ppu;
+		cam.renderLines(lines, from, to, g, xLeft, yUp, xRight, yDown);
+		g.dispose();
+	}
+	
+	private static class Tile
+	{
+		long tx, ty;
+		BufferedImage img;
+		
+		Tile(long tx, long ty, BufferedImage img)
+		{
+			this.tx = tx;
+			this.ty = ty;
+			this.img = img;
+		}
+	}
+}